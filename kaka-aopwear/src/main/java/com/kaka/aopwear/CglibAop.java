@@ -15,10 +15,13 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
 
 /**
  * 切面
@@ -209,6 +212,7 @@ public class CglibAop extends Aop {
                 }
                 if (!"".equals(packageName)) {
 //                    Set<Class<?>> classes = getClassesByPackageName(packageName, classLoader);
+                    //切入点按类名及方法名匹配任意类，无法按注解预过滤，只能加载包下的全部类
                     Set<Class<?>> classes = ClassScaner.getClasses(classLoader, packageName);
 
                     classes.forEach((clasz) -> {
@@ -443,4 +447,50 @@ public class CglibAop extends Aop {
         return null;
     }
 
+    /**
+     * 被切面对象的实例化器，首次实例化经由{@link Enhancer#create()}生成代理类，
+     * 此后以首个实例为原型调用{@link Factory#newInstance(Callback[])}，不再经过Enhancer的类缓存查找
+     *
+     * @param clasz 被切面代理对象Class
+     * @return 实例化器，未被代理处置时返回null
+     */
+    @Override
+    public final <T> Supplier<T> createSupplier(Class<? extends T> clasz) {
+        Enhancer enhancer = class_enhancer_map.get(clasz);
+        if (enhancer == null) {
+            return null;
+        }
+        return new EnhancedSupplier<>(enhancer);
+    }
+
+    private static final class EnhancedSupplier<T> implements Supplier<T> {
+
+        private final Enhancer enhancer;
+        private volatile Factory prototype;
+        private volatile Callback[] callbacks;
+
+        EnhancedSupplier(Enhancer enhancer) {
+            this.enhancer = enhancer;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get() {
+            Factory factory = prototype;
+            if (factory != null) {
+                return (T) factory.newInstance(callbacks);
+            }
+            Object inst;
+            synchronized (this) {
+                inst = enhancer.create();
+            }
+            if (inst instanceof Factory) {
+                Factory f = (Factory) inst;
+                callbacks = f.getCallbacks();
+                prototype = f;
+            }
+            return (T) inst;
+        }
+    }
+
 }
@@ -0,0 +1,73 @@
+package com.kaka.notice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步发送消息并等待处理结果的往返耗时
+ *
+ * @author zkpursuit
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AsynResultBenchmark {
+
+    static final int CMD = 1;
+    static final String RESULT = "result";
+
+    public static class EchoCommand extends Command {
+        @Override
+        public void execute(Message msg) {
+            IResult<Object> result = msg.getResult(RESULT);
+            if (result != null) {
+                result.set(msg.getBody());
+            }
+        }
+    }
+
+    private Facade facade;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        facade = FacadeFactory.getFacade("AsynResultBenchmark-" + System.nanoTime());
+        facade.registerCommand(CMD, EchoCommand.class, 64);
+        threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        facade.initThreadPool(threadPool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.dispose();
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public Object asynResult() {
+        Message msg = new Message(CMD, "payload");
+        IResult<Object> result = msg.setResult(RESULT, new AsynResult<>());
+        facade.sendMessage(msg, true);
+        return result.get();
+    }
+
+    @Benchmark
+    public Object futureResult() {
+        return facade.request(new Message(CMD, "payload"), RESULT, true).join();
+    }
+
+    @Benchmark
+    public Object syncResult() {
+        Message msg = new Message(CMD, "payload");
+        IResult<Object> result = msg.setResult(RESULT, new SyncResult<>());
+        facade.sendMessage(msg, false);
+        return result.get();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.kaka.notice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CommandPool}取出与归还的吞吐量，分别在单线程及多线程竞争下测试
+ *
+ * @author zkpursuit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CommandPoolBenchmark {
+
+    public static class NoopCommand extends Command {
+        @Override
+        public void execute(Message msg) {
+        }
+    }
+
+    @Param({"16", "1024"})
+    public int poolSize;
+
+    private CommandPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Facade facade = FacadeFactory.getFacade("CommandPoolBenchmark-" + System.nanoTime());
+        pool = new CommandPool(facade, poolSize, NoopCommand.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.clear();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Command obtainIdle() {
+        Command cmd = pool.obtain();
+        pool.idle(cmd);
+        return cmd;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Command obtainIdleContended() {
+        Command cmd = pool.obtain();
+        pool.idle(cmd);
+        return cmd;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.kaka.notice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Facade#sendMessage(Message, boolean)}同步与异步派发的吞吐量，事件对应1个{@link Command}及0至N个{@link Mediator}
+ *
+ * @author zkpursuit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class FacadeBenchmark {
+
+    static final int CMD = 1;
+    static final int BATCH = 1000;
+    static final AtomicLong handled = new AtomicLong();
+
+    public static class CountingCommand extends Command {
+        @Override
+        public void execute(Message msg) {
+            handled.incrementAndGet();
+        }
+    }
+
+    public static class CountingMediator extends Mediator {
+        public CountingMediator(String name) {
+            super(name);
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            handled.incrementAndGet();
+        }
+
+        @Override
+        public Object[] listMessageInterests() {
+            return new Object[]{CMD};
+        }
+    }
+
+    @Param({"0", "1", "4"})
+    public int mediators;
+
+    private Facade facade;
+    private ExecutorService threadPool;
+    private final Object body = "payload";
+
+    @Setup(Level.Trial)
+    public void setup() {
+        facade = FacadeFactory.getFacade("FacadeBenchmark-" + System.nanoTime());
+        facade.registerCommand(CMD, CountingCommand.class, 64);
+        for (int i = 0; i < mediators; i++) {
+            facade.registerMediator(new CountingMediator("mediator-" + i));
+        }
+        threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        facade.initThreadPool(threadPool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.dispose();
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public void sendSync() {
+        facade.sendMessage(new Message(CMD, body), false);
+    }
+
+    @Benchmark
+    public void sendSyncPooled() {
+        facade.sendMessage(Message.obtain(CMD, body), false);
+    }
+
+    /**
+     * 异步发送一批消息并等待全部处理完成，结果为每条消息的平均吞吐量
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void sendAsync() {
+        long target = handled.get() + (long) BATCH * (1 + mediators);
+        for (int i = 0; i < BATCH; i++) {
+            facade.sendMessage(new Message(CMD, body), true);
+        }
+        while (handled.get() < target) {
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.kaka.notice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时调度添加与取消的开销，分别以定时调度线程池及时间轮驱动
+ *
+ * @author zkpursuit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+    static final int GROUP_SIZE = 100;
+
+    public static class NoopCommand extends Command {
+        @Override
+        public void execute(Message msg) {
+        }
+    }
+
+    @Param({"executor", "wheel"})
+    public String backend;
+
+    private Facade facade;
+    private ScheduledExecutorService schedulePool;
+    private int seq;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        facade = FacadeFactory.getFacade("SchedulerBenchmark-" + System.nanoTime());
+        facade.registerCommand(1, NoopCommand.class);
+        schedulePool = Executors.newScheduledThreadPool(1);
+        facade.initScheduleThreadPool(schedulePool);
+        if ("wheel".equals(backend)) {
+            facade.initTimingWheel(1, TimeUnit.MILLISECONDS, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.dispose();
+        schedulePool.shutdownNow();
+    }
+
+    private Scheduler farFuture(String group) {
+        return Scheduler.create(group).startTime(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Benchmark
+    public void addCancel() {
+        int cmd = seq++ & 1023;
+        facade.sendMessage(new Message(cmd), farFuture("bench"));
+        facade.cancelSchedule(cmd, "bench");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public void addCancelGroup() {
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            facade.sendMessage(new Message(i), farFuture("group"));
+        }
+        facade.cancelSchedules("group");
+    }
+
+}
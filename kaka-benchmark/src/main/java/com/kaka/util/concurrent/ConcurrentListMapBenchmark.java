@@ -0,0 +1,74 @@
+package com.kaka.util.concurrent;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConcurrentListMap}读取的吞吐量，分别在只读及读写混合（3读1写）下测试
+ *
+ * @author zkpursuit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConcurrentListMapBenchmark {
+
+    @Param({"16", "1024"})
+    public int keys;
+
+    @Param({"4"})
+    public int valuesPerKey;
+
+    private ConcurrentListMap<Integer, Object> map;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        map = new ConcurrentListMap<>();
+        for (int i = 0; i < keys; i++) {
+            for (int j = 0; j < valuesPerKey; j++) {
+                map.put(i, new Object());
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Object> get(Cursor cursor) {
+        return map.get(cursor.index++ % keys);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void forEach(Cursor cursor, Blackhole bh) {
+        map.forEach(cursor.index++ % keys, bh::consume);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public List<Object> mixedGet(Cursor cursor) {
+        return map.get(cursor.index++ % keys);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedPutRemove(Cursor cursor) {
+        Integer key = cursor.index++ % keys;
+        Object value = new Object();
+        map.put(key, value);
+        return map.remove(key, value);
+    }
+
+}
@@ -3,11 +3,16 @@ package com.kaka;
 import com.kaka.aop.Aop;
 import com.kaka.aop.AopFactory;
 import com.kaka.aop.annotation.Aspect;
+import com.kaka.index.ClassIndex;
 import com.kaka.notice.detector.*;
 import com.kaka.numerical.NumericDetector;
 import com.kaka.util.ClassScaner;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * 启动器，其中包含类扫描及事件通知模型的注册
@@ -16,7 +21,11 @@ import java.util.*;
  */
 public abstract class Startup {
 
+    private static final Logger logger = Logger.getLogger(Startup.class.getTypeName());
+
     final Map<String, IDetector> detectorMap = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean parallel;
+    private volatile StartupReport report;
 
     /**
      * 构造方法
@@ -48,12 +57,20 @@ public abstract class Startup {
 
     /**
      * 初始化
+     * <br>
+     * 类路径中存在编译期生成的类索引{@link ClassIndex#INDEX_FILE}时，加载索引中带有kaka注解的类，
+     * 仅以注解预过滤扫描未提供索引的类路径根；否则扫描类路径并加载包下的全部类，
+     * 设置系统属性{@link ClassIndex#FILTER_PROPERTY}为true时以类文件常量池预过滤，同样仅加载带有kaka注解的类。
+     * 若自定义的识别器需识别其它注解的类，须以编译参数及系统属性{@link ClassIndex#ANNOTATIONS_PROPERTY}追加其注解；
+     * 需识别未带注解的类时，设置系统属性{@link ClassIndex#IGNORE_PROPERTY}为true并且不开启预过滤。
      *
      * @param loader   从此类加载器中扫描加载类
      * @param packages .分割的包名
      * @return 扫描到的类集合
      */
     final protected Set<Class<?>> scan(ClassLoader loader, String... packages) {
+        long startTime = System.nanoTime();
+        StartupReport report = new StartupReport();
         Set<Integer> delIdxs = new HashSet<>();
         //过滤子包和相同的包
         for (int i = 0; i < packages.length; i++) {
@@ -77,14 +94,35 @@ public abstract class Startup {
             loader = Thread.currentThread().getContextClassLoader();
         }
         Set<Class<?>> classes = new HashSet<>();
-        for (int i = 0; i < packages.length; i++) {
-            if (!delIdxs.contains(i)) {
-                Set<Class<?>> _classes = ClassScaner.getClasses(loader, packages[i]);
-                if (!_classes.isEmpty()) {
-                    classes.addAll(_classes);
+        Set<String> indexed = ClassIndex.load(loader);
+        Set<String> annotations = ClassIndex.annotations(System.getProperty(ClassIndex.ANNOTATIONS_PROPERTY));
+        if (indexed != null) {
+            classes.addAll(ClassIndex.getClasses(loader, indexed, packages));
+            //部分类路径根未提供索引时（比如未经注解处理器编译的jar包），回退扫描这些类路径根
+            Set<String> roots = ClassIndex.roots(loader);
+            for (int i = 0; i < packages.length; i++) {
+                if (!delIdxs.contains(i)) {
+                    Set<Class<?>> _classes = ClassScaner.getClasses(loader, packages[i], annotations, roots);
+                    if (!_classes.isEmpty()) {
+                        logger.log(Level.WARNING, "包{0}中有{1}个类所在的类路径未提供类索引{2}，已回退为扫描，可对其启用注解处理器以加快启动",
+                                new Object[]{packages[i], _classes.size(), ClassIndex.INDEX_FILE});
+                        classes.addAll(_classes);
+                    }
+                }
+            }
+        } else {
+            boolean filter = Boolean.getBoolean(ClassIndex.FILTER_PROPERTY);
+            for (int i = 0; i < packages.length; i++) {
+                if (!delIdxs.contains(i)) {
+                    Set<Class<?>> _classes = filter ? ClassScaner.getClasses(loader, packages[i], annotations) : ClassScaner.getClasses(loader, packages[i]);
+                    if (!_classes.isEmpty()) {
+                        classes.addAll(_classes);
+                    }
                 }
             }
         }
+        report.scanned(classes.size(), System.nanoTime() - startTime);
+        long aopTime = System.nanoTime();
         final Aop aop = AopFactory.getAop();
         if (aop != null) {
             for (Class<?> cls : classes) {
@@ -97,15 +135,124 @@ public abstract class Startup {
                 }
             }
         }
-        detectorMap.forEach((String name, IDetector detector) -> {
-            classes.forEach(detector::discern);
-            if (detector instanceof PriorityDetector) {
-                ((PriorityDetector) detector).centralizeProcess();
+        report.aop(System.nanoTime() - aopTime);
+        Map<String, IDetector> detectors;
+        synchronized (detectorMap) {
+            detectors = new LinkedHashMap<>(detectorMap);
+        }
+        report.detectors(detectors.keySet());
+        checkDependencies(detectors);
+        if (parallel) {
+            Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+            detectors.forEach((String name, IDetector detector) -> {
+                String[] dependsOn = detector.dependsOn();
+                List<CompletableFuture<Void>> deps = new ArrayList<>();
+                if (dependsOn == null) {
+                    deps.addAll(futures.values());
+                } else {
+                    for (String dep : dependsOn) {
+                        deps.add(futures.get(dep));
+                    }
+                }
+                CompletableFuture<Void> future = deps.isEmpty()
+                        ? CompletableFuture.runAsync(() -> detect(name, detector, classes, report))
+                        : CompletableFuture.allOf(deps.toArray(new CompletableFuture[0])).thenRunAsync(() -> detect(name, detector, classes, report));
+                futures.put(name, future);
+            });
+            try {
+                CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw ex;
             }
-        });
+        } else {
+            detectors.forEach((String name, IDetector detector) -> detect(name, detector, classes, report));
+        }
+        report.total(System.nanoTime() - startTime);
+        this.report = report;
+        logger.log(Level.INFO, "启动耗时报告：{0}", report);
         return classes;
     }
 
+    /**
+     * 校验识别器的依赖，依赖的识别器须已添加且先于依赖方添加，从而顺序执行时也满足依赖关系
+     *
+     * @param detectors 按添加顺序排列的识别器
+     */
+    private static void checkDependencies(Map<String, IDetector> detectors) {
+        Set<String> added = new HashSet<>();
+        detectors.forEach((String name, IDetector detector) -> {
+            String[] dependsOn = detector.dependsOn();
+            if (dependsOn != null) {
+                for (String dep : dependsOn) {
+                    if (!detectors.containsKey(dep)) {
+                        throw new Error(String.format("识别器%s依赖的识别器%s不存在", name, dep));
+                    }
+                    if (!added.contains(dep)) {
+                        throw new Error(String.format("识别器%s依赖的识别器%s须先于其添加", name, dep));
+                    }
+                }
+            }
+            added.add(name);
+        });
+    }
+
+    /**
+     * 以识别器识别所有类，并执行集中处理
+     *
+     * @param name     识别器名称
+     * @param detector 识别器
+     * @param classes  扫描到的类
+     * @param report   启动耗时报告
+     */
+    private void detect(String name, IDetector detector, Set<Class<?>> classes, StartupReport report) {
+        PriorityDetector priorityDetector = detector instanceof PriorityDetector ? (PriorityDetector) detector : null;
+        if (priorityDetector != null) {
+            priorityDetector.setReport(report);
+        }
+        for (Class<?> cls : classes) {
+            long start = System.nanoTime();
+            boolean discerned = detector.discern(cls);
+            report.discern(name, cls, discerned, System.nanoTime() - start);
+        }
+        if (priorityDetector != null) {
+            long start = System.nanoTime();
+            try {
+                priorityDetector.centralizeProcess();
+            } finally {
+                priorityDetector.setReport(null);
+            }
+            report.process(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 设置识别器是否按依赖关系并行执行，默认按添加顺序依次执行
+     * <br>
+     * 并行时无依赖关系的识别器（见{@link IDetector#dependsOn()}）同时执行，各识别器自身仍串行识别所有类；
+     * 开启前须确认自定义识别器声明了完整的依赖，且无依赖关系的识别器之间不共享未同步的状态
+     *
+     * @param parallel true表示按依赖关系并行执行，false表示所有识别器按添加顺序依次执行
+     */
+    final protected void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * 获取最近一次扫描的启动耗时报告
+     *
+     * @return 启动耗时报告，尚未扫描时为null
+     */
+    final public StartupReport getReport() {
+        return report;
+    }
+
     /**
      * 初始化
      *
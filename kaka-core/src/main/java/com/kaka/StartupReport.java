@@ -0,0 +1,239 @@
+package com.kaka;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动耗时报告，记录类扫描、切面注册及每个识别器的耗时，以及每个类在各识别器中的耗时
+ * <br>
+ * 识别器的耗时分为识别（{@link com.kaka.notice.detector.IDetector#discern(Class)}）及集中处理
+ * （{@link com.kaka.notice.detector.PriorityDetector#centralizeProcess()}）两部分；
+ * 识别器并行执行时各识别器的耗时之和可大于总耗时。可并发记录。
+ *
+ * @author zkpursuit
+ */
+public final class StartupReport {
+
+    /**
+     * 单个识别器或单个类的耗时
+     */
+    public static final class Entry {
+        private final String detector;
+        private final String className;
+        private final AtomicLong discernNanos = new AtomicLong();
+        private final AtomicLong processNanos = new AtomicLong();
+        private final AtomicInteger count = new AtomicInteger();
+
+        Entry(String detector, String className) {
+            this.detector = detector;
+            this.className = className;
+        }
+
+        /**
+         * @return 识别器名称
+         */
+        public String getDetector() {
+            return detector;
+        }
+
+        /**
+         * @return 类名，识别器的汇总耗时为null
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return 识别耗时，纳秒
+         */
+        public long getDiscernNanos() {
+            return discernNanos.get();
+        }
+
+        /**
+         * @return 集中处理耗时，纳秒
+         */
+        public long getProcessNanos() {
+            return processNanos.get();
+        }
+
+        /**
+         * @return 总耗时，纳秒
+         */
+        public long getTotalNanos() {
+            return discernNanos.get() + processNanos.get();
+        }
+
+        /**
+         * @return 识别器的汇总耗时为被识别的类数量，单个类的耗时恒为1
+         */
+        public int getCount() {
+            return count.get();
+        }
+    }
+
+    private final Map<String, Entry> detectors = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Entry> classes = new ConcurrentHashMap<>();
+    private volatile long scanNanos;
+    private volatile long aopNanos;
+    private volatile long totalNanos;
+    private volatile int classCount;
+
+    void scanned(int classCount, long nanos) {
+        this.classCount = classCount;
+        this.scanNanos = nanos;
+    }
+
+    void detectors(Collection<String> names) {
+        names.forEach(this::detector);
+    }
+
+    void aop(long nanos) {
+        this.aopNanos = nanos;
+    }
+
+    void total(long nanos) {
+        this.totalNanos = nanos;
+    }
+
+    private Entry detector(String detector) {
+        return detectors.computeIfAbsent(detector, name -> new Entry(name, null));
+    }
+
+    private Entry clasz(String detector, Class<?> cls) {
+        return classes.computeIfAbsent(detector + '|' + cls.getTypeName(), key -> {
+            Entry entry = new Entry(detector, cls.getTypeName());
+            entry.count.set(1);
+            return entry;
+        });
+    }
+
+    /**
+     * 记录类的识别耗时
+     *
+     * @param detector  识别器名称
+     * @param cls       类
+     * @param discerned 是否被识别
+     * @param nanos     耗时，纳秒
+     */
+    public void discern(String detector, Class<?> cls, boolean discerned, long nanos) {
+        Entry entry = detector(detector);
+        entry.discernNanos.addAndGet(nanos);
+        if (discerned) {
+            entry.count.incrementAndGet();
+            clasz(detector, cls).discernNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * 记录识别器的集中处理耗时
+     *
+     * @param detector 识别器名称
+     * @param nanos    耗时，纳秒
+     */
+    public void process(String detector, long nanos) {
+        detector(detector).processNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 记录类在识别器集中处理中的耗时，比如数值配置表的解析
+     *
+     * @param detector 识别器名称
+     * @param cls      类
+     * @param nanos    耗时，纳秒
+     */
+    public void process(String detector, Class<?> cls, long nanos) {
+        clasz(detector, cls).processNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return 启动总耗时，纳秒
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return 类扫描耗时，纳秒
+     */
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * @return 切面注册耗时，纳秒
+     */
+    public long getAopNanos() {
+        return aopNanos;
+    }
+
+    /**
+     * @return 扫描到的类数量
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @return 各识别器的耗时，按识别器添加顺序排列
+     */
+    public List<Entry> getDetectors() {
+        synchronized (detectors) {
+            return new ArrayList<>(detectors.values());
+        }
+    }
+
+    /**
+     * @return 各类在识别器中的耗时，按总耗时降序排列
+     */
+    public List<Entry> getClasses() {
+        List<Entry> list = new ArrayList<>(classes.values());
+        list.sort((e1, e2) -> Long.compare(e2.getTotalNanos(), e1.getTotalNanos()));
+        return list;
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.3fms", nanos / 1e6);
+    }
+
+    /**
+     * 格式化报告
+     *
+     * @param topClasses 最多列出的类数量
+     * @return 报告文本
+     */
+    public String format(int topClasses) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("startup total=").append(ms(totalNanos))
+                .append(" scan=").append(ms(scanNanos)).append(" classes=").append(classCount)
+                .append(" aop=").append(ms(aopNanos));
+        for (Entry entry : getDetectors()) {
+            sb.append("\n  detector=").append(entry.detector)
+                    .append(" discern=").append(ms(entry.getDiscernNanos()))
+                    .append(" process=").append(ms(entry.getProcessNanos()))
+                    .append(" discerned=").append(entry.getCount());
+        }
+        List<Entry> list = getClasses();
+        for (int i = 0; i < list.size() && i < topClasses; i++) {
+            Entry entry = list.get(i);
+            sb.append("\n  class=").append(entry.className)
+                    .append(" detector=").append(entry.detector)
+                    .append(" discern=").append(ms(entry.getDiscernNanos()))
+                    .append(" process=").append(ms(entry.getProcessNanos()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format(20);
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.kaka.aop;
 
+import java.util.function.Supplier;
+
 abstract public class Aop {
 
     /**
@@ -33,4 +35,20 @@ abstract public class Aop {
      */
     abstract public <T> T createInstance(Class<? extends T> clasz);
 
+    /**
+     * 获取被切面代理后对象的实例化器，注册时获取一次并缓存，避免每次实例化都经过{@link #createInstance(Class)}
+     * <br>
+     * 默认实现每次调用{@link #createInstance(Class)}，子类可覆盖以提供更快的实现
+     *
+     * @param clasz
+     * @param <T>
+     * @return 实例化器，未被代理处置时返回null
+     */
+    public <T> Supplier<T> createSupplier(Class<? extends T> clasz) {
+        if (!isPrepared(clasz)) {
+            return null;
+        }
+        return () -> createInstance(clasz);
+    }
+
 }
@@ -0,0 +1,192 @@
+package com.kaka.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 编译期生成的类索引，由{@link ClassIndexProcessor}在编译时写入类路径下的{@link #INDEX_FILE}
+ * <br>
+ * 索引中记录所有带有kaka注解的类，启动时直接按索引加载这些类即可，无需遍历目录及jar包扫描类路径。
+ * 所有索引文件合并使用，未提供索引文件的类路径根（比如未经注解处理器编译的jar包）仍需扫描，见{@link #roots(ClassLoader)}；
+ * 设置系统属性{@link #IGNORE_PROPERTY}为true可忽略索引，回退为类路径扫描。
+ *
+ * @author zkpursuit
+ */
+public final class ClassIndex {
+
+    private static final Logger logger = Logger.getLogger(ClassIndex.class.getTypeName());
+
+    /**
+     * 索引文件在类路径中的位置，每行一个类的二进制名称，#开头的行为注释
+     */
+    public static final String INDEX_FILE = "META-INF/kaka.index";
+
+    /**
+     * 忽略索引的系统属性
+     */
+    public static final String IGNORE_PROPERTY = "kaka.index.ignore";
+
+    /**
+     * 无索引时类路径扫描按注解预过滤的系统属性，默认不过滤
+     * <br>
+     * 开启后未带有{@link #ANNOTATIONS}及追加注解的类不会被加载，仅按接口或父类识别类的自定义识别器将无法识别到这些类。
+     */
+    public static final String FILTER_PROPERTY = "kaka.scan.filter";
+
+    /**
+     * 追加索引注解的系统属性，与编译参数同名，以逗号分隔注解的二进制名称，用于类路径扫描时的注解预过滤
+     */
+    public static final String ANNOTATIONS_PROPERTY = "kaka.index.annotations";
+
+    /**
+     * 默认索引的注解，其中方法注解以方法所在的类为索引
+     */
+    public static final List<String> ANNOTATIONS = Collections.unmodifiableList(Arrays.asList(
+            "com.kaka.notice.annotation.Handler",
+            "com.kaka.notice.annotation.Handlers",
+            "com.kaka.notice.annotation.MultiHandler",
+            "com.kaka.notice.annotation.Model",
+            "com.kaka.numerical.annotation.Numeric",
+            "com.kaka.net.http.annotation.WebServlet",
+            "com.kaka.aop.annotation.Aspect",
+            "com.kaka.aop.annotation.Intercept"
+    ));
+
+    private ClassIndex() {
+    }
+
+    /**
+     * 默认索引的注解及追加的注解
+     *
+     * @param extra 以逗号分隔的追加注解，可为null
+     * @return 注解的二进制名称
+     */
+    public static Set<String> annotations(String extra) {
+        Set<String> types = new LinkedHashSet<>(ANNOTATIONS);
+        if (extra != null) {
+            for (String type : extra.split(",")) {
+                type = type.trim();
+                if (!type.isEmpty()) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * 读取类加载器中的所有索引文件
+     *
+     * @param loader 类加载器
+     * @return 索引中的类名，不存在索引文件或忽略索引时返回null
+     */
+    public static Set<String> load(ClassLoader loader) {
+        if (Boolean.getBoolean(IGNORE_PROPERTY)) {
+            return null;
+        }
+        Enumeration<URL> urls;
+        try {
+            urls = loader.getResources(INDEX_FILE);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, String.format("读取类索引%s失败，回退为类路径扫描", INDEX_FILE), ex);
+            return null;
+        }
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            try (InputStream in = url.openStream()) {
+                read(in, names);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, String.format("读取类索引%s失败，回退为类路径扫描", url), ex);
+                return null;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 提供了索引文件的类路径根
+     *
+     * @param loader 类加载器
+     * @return 类路径根的URL，比如file:/app/classes/、jar:file:/app/lib/a.jar!/
+     */
+    public static Set<String> roots(ClassLoader loader) {
+        Set<String> roots = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> urls = loader.getResources(INDEX_FILE);
+            while (urls.hasMoreElements()) {
+                String url = urls.nextElement().toString();
+                roots.add(url.substring(0, url.length() - INDEX_FILE.length()));
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, String.format("读取类索引%s失败", INDEX_FILE), ex);
+        }
+        return roots;
+    }
+
+    /**
+     * 读取索引文件
+     *
+     * @param in    索引文件输入流
+     * @param names 读取到的类名
+     * @throws IOException 读取异常
+     */
+    static void read(InputStream in, Set<String> names) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && line.charAt(0) != '#') {
+                names.add(line);
+            }
+        }
+    }
+
+    /**
+     * 加载索引中指定包及其子包下的类，不执行类的静态初始化
+     *
+     * @param loader   类加载器
+     * @param names    索引中的类名
+     * @param packages .分割的包名
+     * @return 类集合
+     */
+    public static Set<Class<?>> getClasses(ClassLoader loader, Set<String> names, String... packages) {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (String name : names) {
+            if (!inPackages(name, packages)) {
+                continue;
+            }
+            try {
+                classes.add(Class.forName(name, false, loader));
+            } catch (ClassNotFoundException | LinkageError ex) {
+                logger.log(Level.WARNING, String.format("类索引中的%s无法加载，索引可能已过期", name), ex);
+            }
+        }
+        return classes;
+    }
+
+    private static boolean inPackages(String name, String[] packages) {
+        for (String pkg : packages) {
+            if (pkg.isEmpty() || (name.startsWith(pkg) && name.length() > pkg.length() && name.charAt(pkg.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.kaka.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译期注解处理器，将带有kaka注解的类写入类索引{@link ClassIndex#INDEX_FILE}
+ * <br>
+ * 只需将kaka-core置于编译类路径中即可自动生效；
+ * 自定义识别器所依赖的其它注解可通过编译参数-Akaka.index.annotations=注解完全限定名,...追加。
+ * 增量编译时合并已有的索引，并剔除已不存在的类。
+ *
+ * @author zkpursuit
+ */
+public class ClassIndexProcessor extends AbstractProcessor {
+
+    /**
+     * 追加索引注解的编译参数
+     */
+    public static final String ANNOTATIONS_OPTION = ClassIndex.ANNOTATIONS_PROPERTY;
+
+    private final Set<String> names = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return ClassIndex.annotations(processingEnv == null ? null : processingEnv.getOptions().get(ANNOTATIONS_OPTION));
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(ANNOTATIONS_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement type = typeOf(element);
+                if (type != null) {
+                    names.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !names.isEmpty()) {
+            try {
+                mergeExisting();
+                writeIndex();
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("写入类索引%s失败：%s", ClassIndex.INDEX_FILE, ex));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 注解所在的类，方法注解取方法所在的类
+     */
+    private static TypeElement typeOf(Element element) {
+        if (element.getKind() == ElementKind.METHOD || element.getKind() == ElementKind.CONSTRUCTOR) {
+            element = element.getEnclosingElement();
+        }
+        if (element.getKind().isClass() && element instanceof TypeElement) {
+            return (TypeElement) element;
+        }
+        return null;
+    }
+
+    /**
+     * 合并增量编译前已生成的索引，其中已被删除的类不再保留
+     */
+    private void mergeExisting() {
+        Set<String> olds = new LinkedHashSet<>();
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ClassIndex.INDEX_FILE);
+            try (InputStream in = existing.openInputStream()) {
+                ClassIndex.read(in, olds);
+            }
+        } catch (IOException ex) {
+            //首次编译尚无索引
+            return;
+        }
+        for (String name : olds) {
+            if (!names.contains(name) && processingEnv.getElementUtils().getTypeElement(name.replace('$', '.')) != null) {
+                names.add(name);
+            }
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ClassIndex.INDEX_FILE);
+        try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+            writer.write("# Generated by " + ClassIndexProcessor.class.getTypeName() + "\n");
+            for (String name : names) {
+                writer.write(name);
+                writer.write('\n');
+            }
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+package com.kaka.notice;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link Facade}异步消息准入控制，限制在途（已提交但未处理完成）的异步消息数量
+ * <br> 此类在类包外不可访问
+ *
+ * @author zkpursuit
+ */
+final class AdmissionControl {
+
+    private static final Logger logger = Logger.getLogger(AdmissionControl.class.getTypeName());
+
+    /**
+     * 在途数量限制
+     * <br>
+     * {@link OverflowPolicy#DROP_OLDEST}策略下，受此限制的任务先进入自有的先进先出队列，
+     * 线程池中仅提交取出并执行队首任务的令牌；丢弃最早的消息时直接取出队首任务，令牌数量不超过队列长度。
+     */
+    static final class Limit implements Runnable {
+        final int max;
+        private final AtomicInteger count = new AtomicInteger();
+        private final Queue<Job> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger tokens = new AtomicInteger();
+
+        Limit(int max) {
+            this.max = max <= 0 ? Integer.MAX_VALUE : max;
+        }
+
+        boolean tryAcquire() {
+            for (;;) {
+                int current = count.get();
+                if (current >= max) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            count.decrementAndGet();
+        }
+
+        int get() {
+            return count.get();
+        }
+
+        /**
+         * 任务进入队列
+         *
+         * @param job 任务
+         * @return true 须提交一个新令牌，false 已有足够的令牌
+         */
+        boolean enqueue(Job job) {
+            pending.incrementAndGet();
+            queue.offer(job);
+            for (;;) {
+                int current = tokens.get();
+                if (current >= pending.get()) {
+                    return false;
+                }
+                if (tokens.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 令牌提交失败时撤回任务
+         *
+         * @param job 任务
+         * @return true 任务已撤回，false 任务已被其它令牌取出
+         */
+        boolean cancel(Job job) {
+            tokens.decrementAndGet();
+            if (queue.remove(job)) {
+                pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 取出最早的任务用于丢弃，其令牌保留给后续任务
+         *
+         * @return 任务，队列为空时返回null
+         */
+        Job poll() {
+            Job job = queue.poll();
+            if (job != null) {
+                pending.decrementAndGet();
+            }
+            return job;
+        }
+
+        /**
+         * 取出指定的队首任务用于丢弃
+         *
+         * @param head 先前查看到的队首任务
+         * @return true 已取出，false 已被其它线程取出
+         */
+        boolean poll(Job head) {
+            if (queue.remove(head)) {
+                pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        Job peek() {
+            return queue.peek();
+        }
+
+        /**
+         * 令牌：取出并执行队首任务
+         */
+        @Override
+        public void run() {
+            tokens.decrementAndGet();
+            Job job = poll();
+            if (job != null) {
+                job.run();
+            }
+        }
+    }
+
+    /**
+     * 已准入的异步消息处理任务
+     */
+    final class Job implements Runnable {
+        final Facade facade;
+        final RouteTable.Route route;
+        final Message msg;
+        final Limit cmdLimit;
+        final long seq;
+
+        Job(Facade facade, RouteTable.Route route, Message msg, Limit cmdLimit, long seq) {
+            this.facade = facade;
+            this.route = route;
+            this.msg = msg;
+            this.cmdLimit = cmdLimit;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            try {
+                facade.dispatch(route, msg);
+            } finally {
+                msg.release();
+                release(this);
+            }
+        }
+    }
+
+    private final Limit global;
+    private final OverflowPolicy policy;
+    private final RejectedMessageHandler handler;
+    private final Map<Object, Limit> cmdLimits = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    AdmissionControl(int maxInFlight, OverflowPolicy policy, RejectedMessageHandler handler) {
+        this.global = new Limit(maxInFlight);
+        this.policy = policy == null ? OverflowPolicy.CALLER_RUNS : policy;
+        this.handler = handler;
+    }
+
+    /**
+     * 设置单个事件的在途数量限制
+     *
+     * @param cmd         事件号
+     * @param maxInFlight 在途数量上限，小于等于0表示取消限制
+     */
+    void setLimit(Object cmd, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            cmdLimits.remove(cmd);
+        } else {
+            cmdLimits.put(cmd, new Limit(maxInFlight));
+        }
+    }
+
+    /**
+     * 当前在途的异步消息数量
+     *
+     * @return 在途数量
+     */
+    int inFlight() {
+        return global.get();
+    }
+
+    /**
+     * 准入并提交异步消息
+     * <br>
+     * {@link OverflowPolicy#DROP_OLDEST}策略下，进入分区邮箱的消息须保持同键消息的顺序，不进入队列也不会被丢弃。
+     *
+     * @param facade        消息所属的{@link Facade}
+     * @param route         事件路由
+     * @param msg           待处理的消息
+     * @param throwOnReject {@link OverflowPolicy#FAIL_FAST}策略下拒绝消息时是否抛出异常
+     * @return true 消息已被接收（已提交或已在调用线程中处理），false 消息被丢弃或拒绝
+     */
+    boolean submit(Facade facade, RouteTable.Route route, Message msg, boolean throwOnReject) {
+        for (;;) {
+            Limit cmdLimit = cmdLimits.isEmpty() ? null : cmdLimits.get(route.cmd);
+            Limit full = null;
+            if (!global.tryAcquire()) {
+                full = global;
+            } else if (cmdLimit != null && !cmdLimit.tryAcquire()) {
+                global.release();
+                full = cmdLimit;
+            }
+            if (full == null) {
+                if (policy == OverflowPolicy.DROP_OLDEST && !facade.isPartitioned(msg)) {
+                    enqueue(new Job(facade, route, msg, cmdLimit, sequence.incrementAndGet()));
+                    return true;
+                }
+                Job job = new Job(facade, route, msg, cmdLimit, 0);
+                try {
+                    facade.execute(route, msg, job);
+                } catch (RuntimeException ex) {
+                    release(job);
+                    throw ex;
+                }
+                return true;
+            }
+            switch (policy) {
+                case CALLER_RUNS:
+                    try {
+                        facade.dispatch(route, msg);
+                    } finally {
+                        msg.release();
+                    }
+                    return true;
+                case DROP_OLDEST:
+                    Job oldest = dropOldest(full);
+                    if (oldest != null) {
+                        reject(oldest.facade, oldest.msg);
+                        release(oldest);
+                        continue;
+                    }
+                    reject(facade, msg);
+                    return false;
+                case DROP_NEWEST:
+                    reject(facade, msg);
+                    return false;
+                default:
+                    reject(facade, msg);
+                    if (throwOnReject) {
+                        throw new RejectedExecutionException(String.format("异步消息在途数量超出限制，拒绝处理事件%s", route.cmd));
+                    }
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * 任务进入所属限制的队列，令牌不足时提交令牌
+     *
+     * @param job 任务
+     */
+    private void enqueue(Job job) {
+        Limit lane = job.cmdLimit == null ? global : job.cmdLimit;
+        if (!lane.enqueue(job)) {
+            return;
+        }
+        try {
+            job.facade.execute(job.route, job.msg, lane);
+        } catch (RuntimeException ex) {
+            if (lane.cancel(job)) {
+                release(job);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * 丢弃最早提交且尚未开始处理的消息
+     *
+     * @param full 已达上限的限制，为单个事件的限制时仅丢弃此事件的消息
+     * @return 被丢弃的任务，无可丢弃的任务时返回null
+     */
+    private Job dropOldest(Limit full) {
+        if (full != global) {
+            return full.poll();
+        }
+        for (;;) {
+            Limit oldest = null;
+            Job head = global.peek();
+            if (head != null) {
+                oldest = global;
+            }
+            for (Limit lane : cmdLimits.values()) {
+                Job job = lane.peek();
+                if (job != null && (head == null || job.seq < head.seq)) {
+                    head = job;
+                    oldest = lane;
+                }
+            }
+            if (oldest == null) {
+                return null;
+            }
+            if (oldest.poll(head)) {
+                return head;
+            }
+        }
+    }
+
+    private void reject(Facade facade, Message msg) {
+        try {
+            if (handler != null) {
+                handler.rejected(facade, msg, policy);
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, ex.getMessage(), ex);
+        } finally {
+            msg.release();
+        }
+    }
+
+    private void release(Job job) {
+        global.release();
+        if (job.cmdLimit != null) {
+            job.cmdLimit.release();
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.kaka.notice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个事件的消息合并缓冲区，按合并键保存等待派发的消息
+ * <br> 此类在类包外不可访问
+ *
+ * @author zkpursuit
+ */
+final class CoalescingBuffer {
+
+    private static final Object NULL_KEY = new Object();
+
+    /**
+     * 等待派发的消息及其派发方式
+     */
+    static final class Pending {
+        final Message msg;
+        final boolean asyn;
+
+        Pending(Message msg, boolean asyn) {
+            this.msg = msg;
+            this.asyn = asyn;
+        }
+    }
+
+    final Object cmd;
+    /**
+     * 合并窗口毫秒数，小于等于0时仅在手动调用flush时派发
+     */
+    final long windowMillis;
+    final MessageCoalescer coalescer;
+    private final Map<Object, Pending> pendings = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    CoalescingBuffer(Object cmd, long windowMillis, MessageCoalescer coalescer) {
+        this.cmd = cmd;
+        this.windowMillis = windowMillis;
+        this.coalescer = coalescer == null ? MessageCoalescer.LATEST : coalescer;
+    }
+
+    /**
+     * 放入消息，与等待派发的同键消息合并；缓冲区由空变为非空时开启新的合并窗口
+     *
+     * @param facade 消息所属的{@link Facade}
+     * @param msg    消息
+     * @param asyn   窗口结束时是否异步派发
+     */
+    void offer(Facade facade, Message msg, boolean asyn) {
+        Object key = coalescer.coalesceKey(msg);
+        pendings.merge(key == null ? NULL_KEY : key, new Pending(msg, asyn), (Pending old, Pending in) -> {
+            Message merged = coalescer.combine(old.msg, in.msg);
+            if (merged != old.msg) {
+                old.msg.release();
+            }
+            if (merged != in.msg) {
+                in.msg.release();
+            }
+            return merged == in.msg ? in : new Pending(merged, in.asyn);
+        });
+        if (windowMillis > 0 && scheduled.compareAndSet(false, true)) {
+            try {
+                facade.scheduleFlush(this);
+            } catch (Error | RuntimeException ex) {
+                scheduled.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * 派发所有等待中的消息
+     *
+     * @param facade 消息所属的{@link Facade}
+     */
+    void flush(Facade facade) {
+        scheduled.set(false);
+        for (Object key : pendings.keySet()) {
+            Pending pending = pendings.remove(key);
+            if (pending != null) {
+                facade.deliverCoalesced(pending.msg, pending.asyn);
+            }
+        }
+    }
+
+    /**
+     * 丢弃所有等待中的消息
+     */
+    void clear() {
+        for (Object key : pendings.keySet()) {
+            Pending pending = pendings.remove(key);
+            if (pending != null) {
+                pending.msg.release();
+            }
+        }
+    }
+
+    /**
+     * 等待派发的消息数量
+     *
+     * @return 消息数量
+     */
+    int size() {
+        return pendings.size();
+    }
+
+}
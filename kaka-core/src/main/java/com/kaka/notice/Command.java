@@ -4,6 +4,8 @@ import com.kaka.util.ObjectPool;
 
 /**
  * 控制命令类
+ * <br>
+ * 默认每次处理消息时创建（或从对象池取出）一个实例；以无状态模式注册时仅有一个实例，被并发调用。
  *
  * @author zkpursuit
  */
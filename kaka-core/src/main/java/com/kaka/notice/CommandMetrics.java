@@ -0,0 +1,137 @@
+package com.kaka.notice;
+
+import com.kaka.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个事件的处理统计：处理次数、异常次数、异步排队等待耗时及处理耗时
+ * <br>
+ * 计数使用条带化的{@link LongAdder}，耗时使用条带化的{@link LatencyHistogram}，多线程同时记录时互不竞争。
+ * 线程池异步派发时{@link Command}与{@link Mediator}在不同任务中执行，处理耗时分别记录。
+ *
+ * @author zkpursuit
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+
+    private static final double NANOS_PER_MICRO = 1000d;
+
+    private final Object cmd;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram execution = new LatencyHistogram();
+
+    CommandMetrics(Object cmd) {
+        this.cmd = cmd;
+    }
+
+    void recordInvocation() {
+        invocations.increment();
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordQueueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    void recordExecution(long nanos) {
+        execution.record(nanos);
+    }
+
+    public Object cmd() {
+        return cmd;
+    }
+
+    public LatencyHistogram queueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram execution() {
+        return execution;
+    }
+
+    @Override
+    public String getCmd() {
+        return String.valueOf(cmd);
+    }
+
+    @Override
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getQueueWaitMean() {
+        return queueWait.mean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getQueueWaitP50() {
+        return queueWait.percentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getQueueWaitP99() {
+        return queueWait.percentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getQueueWaitP999() {
+        return queueWait.percentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getQueueWaitMax() {
+        return queueWait.max() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getExecutionMean() {
+        return execution.mean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getExecutionP50() {
+        return execution.percentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getExecutionP99() {
+        return execution.percentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getExecutionP999() {
+        return execution.percentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getExecutionMax() {
+        return execution.max() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public void reset() {
+        invocations.reset();
+        errors.reset();
+        queueWait.reset();
+        execution.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{invocations=%d, errors=%d, queueWait(us) p50=%.1f p99=%.1f max=%.1f, execution(us) p50=%.1f p99=%.1f max=%.1f}",
+                getCmd(), getInvocations(), getErrors(), getQueueWaitP50(), getQueueWaitP99(), getQueueWaitMax(),
+                getExecutionP50(), getExecutionP99(), getExecutionMax());
+    }
+
+}
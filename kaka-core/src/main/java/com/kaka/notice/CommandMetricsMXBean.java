@@ -0,0 +1,41 @@
+package com.kaka.notice;
+
+/**
+ * 单个事件处理统计的JMX管理接口，耗时单位均为微秒
+ *
+ * @author zkpursuit
+ */
+public interface CommandMetricsMXBean {
+
+    String getCmd();
+
+    long getInvocations();
+
+    long getErrors();
+
+    double getQueueWaitMean();
+
+    double getQueueWaitP50();
+
+    double getQueueWaitP99();
+
+    double getQueueWaitP999();
+
+    double getQueueWaitMax();
+
+    double getExecutionMean();
+
+    double getExecutionP50();
+
+    double getExecutionP99();
+
+    double getExecutionP999();
+
+    double getExecutionMax();
+
+    /**
+     * 清空统计数据
+     */
+    void reset();
+
+}
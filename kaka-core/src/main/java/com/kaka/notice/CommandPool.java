@@ -1,26 +1,50 @@
 package com.kaka.notice;
 
-import com.kaka.util.ObjectPool;
+import com.kaka.util.concurrent.MagazinePool;
+
+import java.util.function.Supplier;
 
 /**
- * {@link com.kaka.notice.Command}对象池
+ * {@link com.kaka.notice.Command}对象池，基于线程本地弹匣，取出及放回命令对象一般无需任何同步
+ * <br> 每个池化命令各自持有对象池，单个对象池的闲置对象上限约为maxSize + 线程数 × 2 × 弹匣容量（弹匣容量不超过16），
+ * 池化命令较多且派发线程较多时闲置命令对象总数随二者乘积增长，可减小maxSize以同时减小弹匣容量
  * <br> 此类在类包外不可访问
  *
  * @author zkpursuit
  */
-class CommandPool extends ObjectPool<Command> {
+class CommandPool extends MagazinePool<Command> {
 
-    private final Facade context;
     final Class<? extends Command> cls;
+    /**
+     * 注册时生成的实例化器，非池化的命令每次派发均经由此创建
+     */
+    private final Supplier<? extends Command> factory;
+    /**
+     * 无状态模式下唯一的{@link com.kaka.notice.Command}实例，可被并发调用，派发时不再取出及放回；池化模式下为null
+     */
+    final Command singleton;
 
     CommandPool(Facade context, int maxSize, Class<? extends Command> cls) {
         super(maxSize);
-        this.context = context;
         this.cls = cls;
+        this.factory = context.objectFactory(cls);
+        this.singleton = null;
+    }
+
+    /**
+     * 无状态模式
+     *
+     * @param singleton 已绑定{@link com.kaka.notice.Facade}及命令号的唯一实例
+     */
+    CommandPool(Command singleton) {
+        super(0);
+        this.cls = singleton.getClass();
+        this.factory = null;
+        this.singleton = singleton;
     }
 
     @Override
     protected Command newObject() {
-        return (Command) this.context.createObject(cls);
+        return this.factory.get();
     }
 }
@@ -2,17 +2,26 @@ package com.kaka.notice;
 
 import com.kaka.aop.Aop;
 import com.kaka.aop.AopFactory;
+import com.kaka.util.Instantiator;
 import com.kaka.util.ObjectPool;
 import com.kaka.util.ReflectUtils;
 import com.kaka.util.StringUtils;
-import com.kaka.util.concurrent.ConcurrentListMap;
+import com.kaka.util.concurrent.PartitionedExecutor;
+import com.kaka.util.concurrent.TimingWheel;
+import com.kaka.util.concurrent.VirtualThreads;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * 整个框架的中枢
@@ -20,14 +29,28 @@ import java.util.concurrent.TimeUnit;
  * @author zkpursuit
  */
 public class Facade implements INotifier {
+
+    private static final Logger logger = Logger.getLogger(Facade.class.getTypeName());
+
     String __name;
     private final Map<String, Proxy> proxyMap = new ConcurrentHashMap<>();
     private final Map<String, Mediator> mediaMap = new ConcurrentHashMap<>();
-    private final ConcurrentListMap<Object, Mediator> notiMediMap = new ConcurrentListMap<>();
     private final Map<Object, ObjectPool> cmdPoolMap = new ConcurrentHashMap<>();
+    private final RouteTable routeTable = new RouteTable();
     private Executor threadPool;
+    private PartitionedExecutor mailboxes;
+    private RingBufferDispatcher ringDispatcher;
+    private AdmissionControl admission;
     private ScheduledExecutorService scheduleThreadPool;
-    private final Map<String, ScheduledFuture<?>> scheduleFutureMap = new ConcurrentHashMap<>();
+    private TimingWheel timingWheel;
+    /**
+     * 时间轮是否由此{@link Facade}创建，仅停止自身创建的时间轮，外部传入的时间轮可能被共享
+     */
+    private boolean ownsTimingWheel;
+    private final Map<String, Map<Object, Scheduler>> schedulerMap = new ConcurrentHashMap<>();
+    private ScheduleJournal scheduleJournal;
+    private MessageJournal messageJournal;
+    private volatile FacadeMetrics metrics;
 
     /**
      * 创建一个内核
@@ -51,6 +74,105 @@ public class Facade implements INotifier {
      */
     public void initThreadPool(Executor threadPool) {
         this.threadPool = threadPool;
+        this.mailboxes = null;
+    }
+
+    /**
+     * 初始化线程池及分区邮箱，用于sendMessage中异步处理消息
+     * <br>
+     * 异步派发携带分区键（{@link Message#setPartitionKey(Object)}）的消息时，
+     * 消息对应的{@link Command}及{@link Mediator}将在分区邮箱中依次执行，
+     * 相同分区键的消息按派发顺序处理且互不重叠；未携带分区键的消息仍直接提交到线程池。
+     *
+     * @param threadPool 线程池
+     * @param partitions 分区邮箱数量，一般设为线程池线程数的若干倍，小于等于0表示不启用分区邮箱
+     */
+    public void initThreadPool(Executor threadPool, int partitions) {
+        this.threadPool = threadPool;
+        this.mailboxes = partitions > 0 ? new PartitionedExecutor(threadPool, partitions) : null;
+    }
+
+    /**
+     * 以虚拟线程执行异步消息，每个异步任务一个虚拟线程
+     * <br>
+     * 适合Command、Mediator中存在阻塞操作（比如通过Proxy访问数据库）的场景，
+     * 无需为阻塞调用配置大量平台线程；jdk21以下版本不支持虚拟线程，将使用fallback线程池。
+     *
+     * @param fallback 不支持虚拟线程时使用的线程池
+     * @return true 已启用虚拟线程，false 使用fallback线程池
+     */
+    public boolean initVirtualThreadPool(Executor fallback) {
+        return initVirtualThreadPool(fallback, 0);
+    }
+
+    /**
+     * 以虚拟线程执行异步消息，并初始化分区邮箱
+     *
+     * @param fallback   不支持虚拟线程时使用的线程池
+     * @param partitions 分区邮箱数量，小于等于0表示不启用分区邮箱
+     * @return true 已启用虚拟线程，false 使用fallback线程池
+     * @see #initThreadPool(Executor, int)
+     */
+    public boolean initVirtualThreadPool(Executor fallback, int partitions) {
+        Executor executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            initThreadPool(fallback, partitions);
+            return false;
+        }
+        initThreadPool(executor, partitions);
+        return true;
+    }
+
+    /**
+     * 初始化环形缓冲区派发器，设置后异步消息（携带分区键且已配置分区邮箱的消息除外）
+     * 将写入派发器的预分配槽位，由其消费者线程处理，不再提交到线程池
+     *
+     * @param dispatcher 环形缓冲区派发器，须已调用start方法启动；为null表示取消
+     */
+    public void initRingBufferDispatcher(RingBufferDispatcher dispatcher) {
+        this.ringDispatcher = dispatcher;
+    }
+
+    public RingBufferDispatcher getRingBufferDispatcher() {
+        return this.ringDispatcher;
+    }
+
+    /**
+     * 初始化异步消息准入控制，限制在途（已提交但未处理完成）的异步消息数量，
+     * 超出限制时按策略处理新消息，避免突发流量下线程池队列无限增长导致内存溢出
+     * <br>
+     * 启用后每个异步消息作为一个任务提交，其{@link Command}及所有{@link Mediator}在同一任务中依次执行。
+     * 同步消息不受限制。
+     *
+     * @param maxInFlight 整个{@link Facade}的在途数量上限，小于等于0表示不限制（仅使用单个事件的限制）
+     * @param policy      超出限制时的处理策略
+     * @param handler     消息被丢弃或拒绝时的回调，可为null
+     */
+    public void initAdmissionControl(int maxInFlight, OverflowPolicy policy, RejectedMessageHandler handler) {
+        this.admission = new AdmissionControl(maxInFlight, policy, handler);
+    }
+
+    /**
+     * 设置单个事件的异步消息在途数量上限，须先调用initAdmissionControl
+     *
+     * @param cmd         事件号
+     * @param maxInFlight 在途数量上限，小于等于0表示取消限制
+     */
+    public void setInFlightLimit(Object cmd, int maxInFlight) {
+        if (admission == null) {
+            throw new Error(String.format("设置事件在途数量上限前请先调用 %s.initAdmissionControl方法", this.getClass().toString()));
+        }
+        admission.setLimit(cmd, maxInFlight);
+    }
+
+    /**
+     * 当前在途的异步消息数量，未启用准入控制时返回-1
+     *
+     * @return 在途数量
+     */
+    public int getInFlightCount() {
+        AdmissionControl admission = this.admission;
+        return admission == null ? -1 : admission.inFlight();
     }
 
     /**
@@ -62,6 +184,134 @@ public class Facade implements INotifier {
         this.scheduleThreadPool = scheduleThreadPool;
     }
 
+    /**
+     * 初始化分层时间轮，初始化后定时调度由时间轮驱动，不再使用定时调度线程池
+     *
+     * @param timingWheel 时间轮，可被多个{@link Facade}共享，{@link #dispose()}时不会被停止
+     */
+    public void initTimingWheel(TimingWheel timingWheel) {
+        stopOwnedTimingWheel();
+        this.timingWheel = timingWheel;
+    }
+
+    /**
+     * 初始化分层时间轮，初始化后定时调度由时间轮驱动，不再使用定时调度线程池
+     *
+     * @param tickDuration 刻度时长，即定时精度
+     * @param unit         刻度时长单位
+     * @param executor     到期调度任务的执行器，为null时在时间轮工作线程中执行
+     */
+    public void initTimingWheel(long tickDuration, TimeUnit unit, Executor executor) {
+        stopOwnedTimingWheel();
+        this.timingWheel = new TimingWheel(tickDuration, unit, executor);
+        this.ownsTimingWheel = true;
+    }
+
+    /**
+     * 停止由此{@link Facade}创建的时间轮，结束其工作线程
+     */
+    private void stopOwnedTimingWheel() {
+        TimingWheel wheel = this.timingWheel;
+        if (wheel != null && ownsTimingWheel) {
+            wheel.stop();
+        }
+        this.ownsTimingWheel = false;
+    }
+
+    /**
+     * 初始化定时调度日志，并恢复日志中所有未结束的调度
+     * <br>
+     * 须在{@link #initScheduleThreadPool(ScheduledExecutorService)}或{@link #initTimingWheel(TimingWheel)}之后调用，
+     * 此后标记为{@link Scheduler#durable()}的调度将被持久化
+     *
+     * @param scheduleJournal 定时调度日志
+     * @return 恢复的调度数量
+     */
+    public int initScheduleJournal(ScheduleJournal scheduleJournal) {
+        this.scheduleJournal = scheduleJournal;
+        return scheduleJournal.restore(this);
+    }
+
+    public ScheduleJournal getScheduleJournal() {
+        return this.scheduleJournal;
+    }
+
+    /**
+     * 初始化消息日志，此后发送的选定事件在派发前写入日志，可由{@link JournalReplayer}回放
+     *
+     * @param messageJournal 消息日志，为null时停止写入
+     */
+    public void initMessageJournal(MessageJournal messageJournal) {
+        this.messageJournal = messageJournal;
+    }
+
+    public MessageJournal getMessageJournal() {
+        return this.messageJournal;
+    }
+
+    /**
+     * 选定的事件写入消息日志
+     *
+     * @param msg 待处理的消息
+     */
+    private void journal(Message msg) {
+        MessageJournal journal = this.messageJournal;
+        if (journal != null && journal.accepts(msg.what)) {
+            journal.append(msg);
+        }
+    }
+
+    /**
+     * 开启或关闭事件处理统计，未开启过统计时处理消息没有额外开销
+     * <br>
+     * 首次开启时将统计对象注册为MBean，之后也可通过JMX开启或关闭
+     *
+     * @param enabled true开启
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        FacadeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            if (!enabled) {
+                return;
+            }
+            synchronized (this) {
+                metrics = this.metrics;
+                if (metrics == null) {
+                    metrics = new FacadeMetrics(this.__name);
+                    this.metrics = metrics;
+                }
+            }
+        }
+        metrics.setEnabled(enabled);
+    }
+
+    /**
+     * 事件处理统计
+     *
+     * @return 统计对象，从未开启过统计时返回null
+     */
+    public FacadeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * 正在统计时返回事件的统计
+     *
+     * @param cmd 事件号
+     * @return 事件的统计，未开启统计时返回null
+     */
+    private CommandMetrics activeMetrics(Object cmd) {
+        FacadeMetrics metrics = this.metrics;
+        if (metrics == null || !metrics.enabled) {
+            return null;
+        }
+        return metrics.metrics(cmd);
+    }
+
+    public TimingWheel getTimingWheel() {
+        return this.timingWheel;
+    }
+
     public Executor getThreadPool() {
         return this.threadPool;
     }
@@ -77,16 +327,28 @@ public class Facade implements INotifier {
      * @return 实例
      */
     Object createObject(Class clasz) {
+        return objectFactory(clasz).get();
+    }
+
+    /**
+     * 获取对象的实例化器，被切面代理的类由{@link Aop#createSupplier(Class)}生成，
+     * 其它类由{@link Instantiator}生成，二者创建对象的开销均接近直接new；注册时获取一次并缓存
+     *
+     * @param <T>   对象类型
+     * @param clasz 对象Class
+     * @return 实例化器
+     */
+    <T> Supplier<T> objectFactory(Class<T> clasz) {
         Aop aop = AopFactory.getAop();
         if (aop != null) {
-            Object inst = aop.createInstance(clasz);
-            if (inst != null) {
-                return inst;
+            Supplier<T> supplier = aop.createSupplier(clasz);
+            if (supplier != null) {
+                return supplier;
             }
         }
         try {
-            return ReflectUtils.newInstance(clasz);
-        } catch (Exception ex) {
+            return Instantiator.of(clasz);
+        } catch (Error ex) {
             throw new Error("必须声明一个无参构造方法", ex);
         }
     }
@@ -322,7 +584,7 @@ public class Facade implements INotifier {
             return;
         }
         for (Object notiId : notiIds) {
-            notiMediMap.put(notiId, mediator);
+            routeTable.addMediator(notiId, mediator);
         }
         mediator.facade = this;
         mediator.onRegister();
@@ -436,7 +698,7 @@ public class Facade implements INotifier {
                 return (T) observer;
             }
             for (Object notiId : notiIds) {
-                notiMediMap.remove(notiId, observer);
+                routeTable.removeMediator(notiId, observer);
             }
             observer.facade = null;
             observer.onRemove();
@@ -537,7 +799,30 @@ public class Facade implements INotifier {
         if (cmdPoolMap.containsKey(cmd)) {
             cmdPoolMap.remove(cmd);
         }
-        cmdPoolMap.put(cmd, new CommandPool(this, pooledSize, clasz));
+        CommandPool pool = new CommandPool(this, pooledSize, clasz);
+        cmdPoolMap.put(cmd, pool);
+        routeTable.setPool(cmd, pool);
+    }
+
+    /**
+     * 注册无状态的命令执行器
+     * <br>
+     * 仅创建一个实例并绑定{@link Facade}及命令号，此后所有消息均由此实例处理（异步时被并发调用），
+     * 派发时无需创建、取出、放回或重置对象；{@link Command#execute(Message)}中不可保存单次调用的状态。
+     *
+     * @param cmd   命令执行器唯一标识
+     * @param clasz 命令执行器类对象
+     */
+    final public void registerStatelessCommand(Object cmd, Class<? extends Command> clasz) {
+        if (cmdPoolMap.containsKey(cmd)) {
+            cmdPoolMap.remove(cmd);
+        }
+        Command command = (Command) createObject(clasz);
+        command.facade = this;
+        command.cmd = cmd;
+        CommandPool pool = new CommandPool(command);
+        cmdPoolMap.put(cmd, pool);
+        routeTable.setPool(cmd, pool);
     }
 
     /**
@@ -558,11 +843,15 @@ public class Facade implements INotifier {
     final public void removeCommand(Object cmd) {
         if (cmdPoolMap.containsKey(cmd)) {
             cmdPoolMap.remove(cmd);
+            routeTable.setPool(cmd, null);
         }
     }
 
     /**
      * 消息调度处理
+     * <br>
+     * 池化的消息（{@link Message#obtain(Object, Object)}）在对应的{@link Command}及所有{@link Mediator}
+     * 处理完成后被释放，引用计数归零时放回消息池，调用此方法后调用方不应再使用此消息。
      *
      * @param msg  待处理的消息
      * @param asyn true为异步，设为true时须调用initThreadPool方法初始化线程池
@@ -572,39 +861,487 @@ public class Facade implements INotifier {
         if (msg == null) {
             return;
         }
-        if (cmdPoolMap.containsKey(msg.getWhat())) {
-            final CommandPool pool = (CommandPool) cmdPoolMap.get(msg.getWhat());
-            final Command cmd = pool.obtain();
+        journal(msg);
+        replayMessage(msg, asyn);
+    }
+
+    /**
+     * 派发消息，不写入消息日志，供{@link JournalReplayer}回放日志
+     *
+     * @param msg  待处理的消息
+     * @param asyn true为异步
+     */
+    void replayMessage(final Message msg, final boolean asyn) {
+        final RouteTable.Route route = routeTable.get(msg.getWhat());
+        if (route == null) {
+            msg.release();
+            return;
+        }
+        if (route.coalescing != null) {
+            route.coalescing.offer(this, msg, asyn);
+            return;
+        }
+        send(route, msg, asyn);
+    }
+
+    /**
+     * 按路由派发消息，不经过消息合并
+     *
+     * @param route 事件路由
+     * @param msg   待处理的消息
+     * @param asyn  true为异步
+     */
+    private void send(final RouteTable.Route route, final Message msg, final boolean asyn) {
+        if (route.remote != null) {
+            forward(route, msg);
+            return;
+        }
+        if (!asyn) {
+            try {
+                dispatch(route, msg);
+            } finally {
+                msg.release();
+            }
+            return;
+        }
+        sendAsyn(route, msg, true);
+    }
+
+    /**
+     * 将远程事件的消息交由转发器处理后释放
+     *
+     * @param route 远程事件的路由
+     * @param msg   待转发的消息
+     */
+    private void forward(final RouteTable.Route route, final Message msg) {
+        try {
+            route.remote.forward(msg);
+        } finally {
+            msg.release();
+        }
+    }
+
+    /**
+     * 异步发送消息，并获知消息是否被接收
+     * <br>
+     * 启用准入控制（{@link #initAdmissionControl(int, OverflowPolicy, RejectedMessageHandler)}）后，
+     * 消息因在途数量超出限制被丢弃或拒绝时返回false，即使策略为{@link OverflowPolicy#FAIL_FAST}也不抛出异常。
+     *
+     * @param msg 待处理的消息
+     * @return true 消息已被接收，false 消息被丢弃、拒绝或无对应的事件处理器
+     */
+    @Override
+    final public boolean offerMessage(final Message msg) {
+        if (msg == null) {
+            return false;
+        }
+        journal(msg);
+        final RouteTable.Route route = routeTable.get(msg.getWhat());
+        if (route == null) {
+            msg.release();
+            return false;
+        }
+        if (route.coalescing != null) {
+            route.coalescing.offer(this, msg, true);
+            return true;
+        }
+        return sendAsyn(route, msg, false);
+    }
+
+    /**
+     * 异步派发消息
+     *
+     * @param route         事件路由
+     * @param msg           待处理的消息
+     * @param throwOnReject 准入控制拒绝消息时是否抛出异常
+     * @return true 消息已被接收
+     */
+    private boolean sendAsyn(final RouteTable.Route route, final Message msg, boolean throwOnReject) {
+        if (route.remote != null) {
+            forward(route, msg);
+            return true;
+        }
+        final CommandMetrics metrics = activeMetrics(route.cmd);
+        if (metrics != null) {
+            msg.enqueueNanos = System.nanoTime();
+        }
+        final AdmissionControl admission = this.admission;
+        if (admission != null) {
+            return admission.submit(this, route, msg, throwOnReject);
+        }
+        final PartitionedExecutor mailboxes = this.mailboxes;
+        final Object partitionKey = msg.getPartitionKey();
+        if (partitionKey != null && mailboxes != null) {
+            mailboxes.execute(partitionKey, () -> {
+                try {
+                    dispatch(route, msg);
+                } finally {
+                    msg.release();
+                }
+            });
+            return true;
+        }
+        final RingBufferDispatcher ringDispatcher = this.ringDispatcher;
+        if (ringDispatcher != null) {
+            ringDispatcher.publish(this, route, msg);
+            return true;
+        }
+        if (threadPool == null) {
+            throw new Error(String.format("执行异步sendMessage操作前请先调用 %s.initThreadPool方法初始化线程池", this.getClass().toString()));
+        }
+        final CommandPool pool = route.pool;
+        if (pool != null) {
+            final Command singleton = pool.singleton;
+            final Command cmd = singleton != null ? singleton : pool.obtain();
             if (cmd != null) {
-                cmd.facade = this;
-                cmd.cmd = msg.getWhat();
-                if (!asyn) {
-                    cmd.execute(msg);
-                    pool.idle(cmd);
-                } else {
-                    if (threadPool == null) {
-                        throw new Error(String.format("执行异步sendMessage操作前请先调用 %s.initThreadPool方法初始化线程池", this.getClass().toString()));
-                    }
+                if (singleton == null) {
+                    cmd.facade = this;
+                    cmd.cmd = route.cmd;
+                }
+                msg.retain();
+                try {
                     threadPool.execute(() -> {
-                        cmd.execute(msg);
-                        pool.idle(cmd);
+                        long start = metrics == null ? 0 : System.nanoTime();
+                        boolean ok = false;
+                        try {
+                            cmd.execute(msg);
+                            if (singleton == null) {
+                                pool.idle(cmd);
+                            }
+                            ok = true;
+                        } catch (RuntimeException ex) {
+                            msg.completeResults(ex);
+                            throw ex;
+                        } finally {
+                            if (metrics != null) {
+                                record(metrics, msg, start, ok);
+                            }
+                            msg.release();
+                        }
                     });
+                } catch (RejectedExecutionException ex) {
+                    if (singleton == null) {
+                        pool.idle(cmd);
+                    }
+                    rejected(msg, ex);
+                    throw ex;
                 }
             }
         }
-        if (notiMediMap.containsKey(msg.getWhat())) {
-            notiMediMap.forEach(msg.getWhat(), (observer) -> {
-                if (!asyn) {
-                    observer.handleMessage(msg);
-                } else {
-                    if (threadPool == null) {
-                        throw new Error(String.format("执行异步sendMessage操作前请先调用 %s.initThreadPool方法初始化线程池", this.getClass().toString()));
+        final Mediator[] mediators = route.mediators;
+        if (mediators.length > 0) {
+            msg.retain();
+            try {
+                threadPool.execute(() -> {
+                    long start = metrics == null ? 0 : System.nanoTime();
+                    boolean ok = true;
+                    try {
+                        for (Mediator observer : mediators) {
+                            try {
+                                observer.handleMessage(msg);
+                            } catch (RuntimeException ex) {
+                                ok = false;
+                                msg.completeResults(ex);
+                                logger.log(Level.SEVERE, ex.getMessage(), ex);
+                            }
+                        }
+                    } finally {
+                        if (metrics != null) {
+                            record(metrics, msg, start, ok);
+                        }
+                        msg.release();
                     }
-                    threadPool.execute(() -> {
-                        observer.handleMessage(msg);
-                    });
+                });
+            } catch (RejectedExecutionException ex) {
+                rejected(msg, ex);
+                throw ex;
+            }
+        }
+        if (metrics != null) {
+            metrics.recordInvocation();
+        }
+        msg.release();
+        return true;
+    }
+
+    /**
+     * 线程池拒绝异步任务时以异常完成处理结果，并释放为任务增加的引用及调用方交出的引用
+     *
+     * @param msg 未能提交的消息
+     * @param ex  拒绝异常
+     */
+    private static void rejected(Message msg, RejectedExecutionException ex) {
+        msg.completeResults(ex);
+        msg.release();
+        msg.release();
+    }
+
+    /**
+     * 记录一次异步任务的排队等待耗时及处理耗时，排队等待耗时每个消息仅记录一次
+     *
+     * @param metrics 事件的统计
+     * @param msg     已处理的消息
+     * @param start   开始处理的时间点
+     * @param ok      是否正常处理完成
+     */
+    private static void record(CommandMetrics metrics, Message msg, long start, boolean ok) {
+        long end = System.nanoTime();
+        long enqueue = Message.ENQUEUE_NANOS_UPDATER.getAndSet(msg, 0);
+        if (enqueue != 0) {
+            metrics.recordQueueWait(start - enqueue);
+        }
+        metrics.recordExecution(end - start);
+        if (!ok) {
+            metrics.recordError();
+        }
+    }
+
+    /**
+     * 异步派发时消息是否进入分区邮箱
+     *
+     * @param msg 待处理的消息
+     * @return true 携带分区键且已配置分区邮箱
+     */
+    boolean isPartitioned(Message msg) {
+        return mailboxes != null && msg.getPartitionKey() != null;
+    }
+
+    /**
+     * 将已准入的消息处理任务提交到异步通道：携带分区键且已配置分区邮箱时进入分区邮箱，
+     * 已配置环形缓冲区派发器时写入派发器，否则提交到线程池
+     *
+     * @param route 事件路由
+     * @param msg   待处理的消息
+     * @param task  消息处理任务
+     */
+    void execute(RouteTable.Route route, Message msg, Runnable task) {
+        final PartitionedExecutor mailboxes = this.mailboxes;
+        final Object partitionKey = msg.getPartitionKey();
+        if (partitionKey != null && mailboxes != null) {
+            mailboxes.execute(partitionKey, task);
+            return;
+        }
+        final RingBufferDispatcher ringDispatcher = this.ringDispatcher;
+        if (ringDispatcher != null) {
+            ringDispatcher.publish(task);
+            return;
+        }
+        if (threadPool == null) {
+            throw new Error(String.format("执行异步sendMessage操作前请先调用 %s.initThreadPool方法初始化线程池", this.getClass().toString()));
+        }
+        threadPool.execute(task);
+    }
+
+    /**
+     * 批量消息调度处理
+     * <br>
+     * 消息按事件号分组，每组仅查找一次路由；异步时每组仅提交一次线程池任务，
+     * 池化的{@link Command}在组内复用，仅从对象池中取出和归还一次。
+     * <br>
+     * 同一事件号的消息按集合中的顺序处理，不同事件号之间的处理顺序不做保证；
+     * 异步派发时携带分区键且已配置分区邮箱的消息，仍逐条进入其分区邮箱；
+     * 启用准入控制时，异步消息逐条准入。
+     * <br>
+     * 池化的消息（{@link Message#obtain(Object, Object)}）在处理完成后被释放。
+     *
+     * @param msgs 待处理的消息集合
+     * @param asyn true为异步，设为true时须调用initThreadPool方法初始化线程池
+     */
+    @Override
+    final public void sendMessages(Collection<Message> msgs, boolean asyn) {
+        if (msgs == null || msgs.isEmpty()) {
+            return;
+        }
+        final PartitionedExecutor mailboxes = asyn ? this.mailboxes : null;
+        Map<RouteTable.Route, List<Message>> segments = new LinkedHashMap<>();
+        for (Message msg : msgs) {
+            if (msg == null) {
+                continue;
+            }
+            journal(msg);
+            RouteTable.Route route = routeTable.get(msg.getWhat());
+            if (route == null) {
+                msg.release();
+                continue;
+            }
+            if (route.coalescing != null) {
+                route.coalescing.offer(this, msg, asyn);
+                continue;
+            }
+            if (route.remote != null) {
+                forward(route, msg);
+                continue;
+            }
+            if (mailboxes != null && msg.getPartitionKey() != null) {
+                //已在上方写入消息日志，不再经由sendMessage重复写入
+                replayMessage(msg, true);
+                continue;
+            }
+            List<Message> segment = segments.get(route);
+            if (segment == null) {
+                segment = new ArrayList<>();
+                segments.put(route, segment);
+            }
+            segment.add(msg);
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        if (!asyn) {
+            segments.forEach(this::dispatch);
+            return;
+        }
+        if (this.admission != null) {
+            segments.forEach((RouteTable.Route route, List<Message> segment) -> {
+                for (Message msg : segment) {
+                    sendAsyn(route, msg, true);
                 }
             });
+            return;
+        }
+        final RingBufferDispatcher ringDispatcher = this.ringDispatcher;
+        if (ringDispatcher != null) {
+            segments.forEach((RouteTable.Route route, List<Message> segment) -> {
+                stampEnqueue(route, segment);
+                for (Message msg : segment) {
+                    ringDispatcher.publish(this, route, msg);
+                }
+            });
+            return;
+        }
+        if (threadPool == null) {
+            throw new Error(String.format("执行异步sendMessage操作前请先调用 %s.initThreadPool方法初始化线程池", this.getClass().toString()));
+        }
+        segments.forEach((RouteTable.Route route, List<Message> segment) -> {
+            stampEnqueue(route, segment);
+            threadPool.execute(() -> dispatch(route, segment));
+        });
+    }
+
+    /**
+     * 在当前线程中依次执行事件对应的{@link Command}及所有{@link Mediator}
+     *
+     * @param route 事件路由
+     * @param msg   待处理的消息
+     */
+    void dispatch(RouteTable.Route route, Message msg) {
+        final CommandMetrics metrics = activeMetrics(route.cmd);
+        long start = metrics == null ? 0 : System.nanoTime();
+        boolean ok = false;
+        try {
+            handle(route, msg);
+            ok = true;
+        } catch (RuntimeException ex) {
+            msg.completeResults(ex);
+            throw ex;
+        } finally {
+            if (metrics != null) {
+                metrics.recordInvocation();
+                record(metrics, msg, start, ok);
+            }
+        }
+    }
+
+    /**
+     * 异步批量派发时记录消息进入队列的时间点
+     *
+     * @param route 事件路由
+     * @param msgs  同一事件号的消息
+     */
+    private void stampEnqueue(RouteTable.Route route, List<Message> msgs) {
+        if (activeMetrics(route.cmd) != null) {
+            long now = System.nanoTime();
+            for (Message msg : msgs) {
+                msg.enqueueNanos = now;
+            }
+        }
+    }
+
+    /**
+     * 在当前线程中依次执行事件对应的{@link Command}及所有{@link Mediator}
+     *
+     * @param route 事件路由
+     * @param msg   待处理的消息
+     */
+    private void handle(RouteTable.Route route, Message msg) {
+        final CommandPool pool = route.pool;
+        if (pool != null) {
+            final Command singleton = pool.singleton;
+            if (singleton != null) {
+                singleton.execute(msg);
+            } else {
+                final Command cmd = pool.obtain();
+                if (cmd != null) {
+                    cmd.facade = this;
+                    cmd.cmd = route.cmd;
+                    cmd.execute(msg);
+                    pool.idle(cmd);
+                }
+            }
+        }
+        for (final Mediator observer : route.mediators) {
+            observer.handleMessage(msg);
+        }
+    }
+
+    /**
+     * 在当前线程中依次处理同一事件号的多个消息
+     * <br>
+     * 单个消息处理抛出异常时记录日志并继续处理后续消息，每个消息处理后均被释放，复用的{@link Command}最终放回对象池。
+     *
+     * @param route 事件路由
+     * @param msgs  同一事件号的消息
+     */
+    private void dispatch(RouteTable.Route route, List<Message> msgs) {
+        final CommandPool pool = route.pool;
+        final Command singleton = pool == null ? null : pool.singleton;
+        final boolean reuse = pool != null && pool.max > 0;
+        final CommandMetrics metrics = activeMetrics(route.cmd);
+        Command cmd = null;
+        try {
+            for (Message msg : msgs) {
+                long start = metrics == null ? 0 : System.nanoTime();
+                boolean ok = false;
+                try {
+                    if (singleton != null) {
+                        singleton.execute(msg);
+                    } else if (pool != null) {
+                        if (cmd == null) {
+                            cmd = pool.obtain();
+                        }
+                        if (cmd != null) {
+                            cmd.facade = this;
+                            cmd.cmd = route.cmd;
+                            try {
+                                cmd.execute(msg);
+                            } finally {
+                                if (reuse) {
+                                    cmd.reset();
+                                } else {
+                                    cmd = null;
+                                }
+                            }
+                        }
+                    }
+                    for (final Mediator observer : route.mediators) {
+                        observer.handleMessage(msg);
+                    }
+                    ok = true;
+                } catch (RuntimeException ex) {
+                    msg.completeResults(ex);
+                    logger.log(Level.SEVERE, ex.getMessage(), ex);
+                } finally {
+                    if (metrics != null) {
+                        metrics.recordInvocation();
+                        record(metrics, msg, start, ok);
+                    }
+                    msg.release();
+                }
+            }
+        } finally {
+            if (cmd != null) {
+                pool.idle(cmd);
+            }
         }
     }
 
@@ -619,14 +1356,216 @@ public class Facade implements INotifier {
     }
 
     /**
-     * 终止任务调度
+     * 异步派发消息并以{@link CompletableFuture}获取处理结果
+     * <br>
+     * 事件处理器通过msg.getResult({@link FutureResult#DEFAULT_NAME})获取结果容器并调用set方法完成。
+     *
+     * @param <V> 结果类型
+     * @param msg 待处理的消息
+     * @return 处理结果，完成方式见{@link #request(Message, String, boolean)}
+     */
+    final public <V> CompletableFuture<V> request(Message msg) {
+        return request(msg, FutureResult.DEFAULT_NAME, true);
+    }
+
+    /**
+     * 异步派发消息并以{@link CompletableFuture}获取处理结果，超时未完成时以{@link TimeoutException}异常完成
+     * <br>
+     * 须先调用{@link #initScheduleThreadPool(ScheduledExecutorService)}或{@link #initTimingWheel(TimingWheel)}。
+     *
+     * @param <V>     结果类型
+     * @param msg     待处理的消息
+     * @param timeout 超时时长
+     * @param unit    超时时长单位
+     * @return 处理结果，完成方式见{@link #request(Message, String, boolean)}
+     */
+    final public <V> CompletableFuture<V> request(Message msg, long timeout, TimeUnit unit) {
+        CompletableFuture<V> future = request(msg);
+        if (future.isDone()) {
+            return future;
+        }
+        final Object what = msg.getWhat();
+        Runnable expire = () -> future.completeExceptionally(new TimeoutException(String.format("事件%s的处理结果等待超时", what)));
+        TimingWheel wheel = this.timingWheel;
+        if (wheel != null) {
+            TimingWheel.Timeout task = wheel.newTimeout(expire, timeout, unit);
+            future.whenComplete((value, ex) -> task.cancel());
+            return future;
+        }
+        ScheduledExecutorService scheduleThreadPool = this.scheduleThreadPool;
+        if (scheduleThreadPool == null) {
+            throw new Error(String.format("等待处理结果超时前请先调用 %s.initScheduleThreadPool或initTimingWheel方法初始化调度器", this.getClass().toString()));
+        }
+        ScheduledFuture<?> task = scheduleThreadPool.schedule(expire, timeout, unit);
+        future.whenComplete((value, ex) -> task.cancel(false));
+        return future;
+    }
+
+    /**
+     * 派发消息并以{@link CompletableFuture}获取处理结果
+     * <br>
+     * 等待结果时无需阻塞线程，可在返回的future上注册回调或组合后续处理。
+     * <br>
+     * 事件处理器调用set时完成；无对应事件处理器、事件处理器抛出异常时以异常完成；
+     * 所有事件处理器处理完成（或消息被合并替换、被准入控制丢弃）而未赋值时以null完成。
+     * 事件处理器须在处理返回后才赋值时，应先调用{@link Message#retain()}，赋值后再调用{@link Message#release()}。
+     * 远程事件的结果由转发器完成。
+     *
+     * @param <V>        结果类型
+     * @param msg        待处理的消息
+     * @param resultName 处理结果唯一标识名，事件处理器以此名称获取结果容器
+     * @param asyn       true为异步，设为true时须调用initThreadPool方法初始化线程池
+     * @return 处理结果
+     */
+    final public <V> CompletableFuture<V> request(Message msg, String resultName, boolean asyn) {
+        FutureResult<V> result = new FutureResult<>();
+        RouteTable.Route route = routeTable.get(msg.getWhat());
+        if (route == null) {
+            msg.release();
+            result.fail(new IllegalStateException(String.format("未注册事件%s的处理器", msg.getWhat())));
+            return result.future();
+        }
+        msg.setResult(resultName, result);
+        if (route.remote == null) {
+            msg.track();
+        }
+        try {
+            sendMessage(msg, asyn);
+        } catch (RuntimeException ex) {
+            result.fail(ex);
+        }
+        return result.future();
+    }
+
+    /**
+     * 将事件声明为远程事件，此后发送的此事件消息交由转发器发往其它进程，不再由本地的事件处理器处理
+     * <br>
+     * 同时开启了消息合并的事件在合并后转发。
      *
-     * @param name 任务名
+     * @param cmd       事件号
+     * @param forwarder 消息转发器
      */
-    void cancelSchedule(String name) {
-        if (scheduleFutureMap.containsKey(name)) {
-            ScheduledFuture<?> future = scheduleFutureMap.remove(name);
-            future.cancel(true);
+    public void setRemote(Object cmd, MessageForwarder forwarder) {
+        if (forwarder == null) {
+            throw new NullPointerException("forwarder");
+        }
+        routeTable.setRemote(cmd, forwarder);
+    }
+
+    /**
+     * 取消远程事件声明，恢复由本地的事件处理器处理
+     *
+     * @param cmd 事件号
+     */
+    public void removeRemote(Object cmd) {
+        routeTable.setRemote(cmd, null);
+    }
+
+    /**
+     * 开启事件的消息合并派发，适用于只关心最新状态的高频事件（比如位置同步、属性变化）
+     * <br>
+     * 同一事件号且合并键（{@link MessageCoalescer#coalesceKey(Message)}）相同的消息在合并窗口内相互替换或合并，
+     * 窗口结束时每个合并键仅派发一次；同步发送的消息也将在窗口结束时于定时调度线程中派发。
+     * <br>
+     * 合并窗口大于0时须先调用{@link #initScheduleThreadPool(ScheduledExecutorService)}或{@link #initTimingWheel(TimingWheel)}。
+     *
+     * @param cmd       事件号
+     * @param window    合并窗口时长，小于等于0时消息仅在调用{@link #flushCoalesced()}时派发
+     * @param unit      合并窗口时长单位
+     * @param coalescer 消息合并器，为null时后到的消息替换之前的消息
+     */
+    public void setCoalescing(Object cmd, long window, TimeUnit unit, MessageCoalescer coalescer) {
+        CoalescingBuffer prev = routeTable.setCoalescing(cmd, new CoalescingBuffer(cmd, unit.toMillis(window), coalescer));
+        if (prev != null) {
+            prev.flush(this);
+        }
+    }
+
+    /**
+     * 关闭事件的消息合并派发，等待中的消息立即派发
+     *
+     * @param cmd 事件号
+     */
+    public void removeCoalescing(Object cmd) {
+        CoalescingBuffer prev = routeTable.setCoalescing(cmd, null);
+        if (prev != null) {
+            prev.flush(this);
+        }
+    }
+
+    /**
+     * 立即派发所有事件合并中的消息，可在每帧结束时调用
+     */
+    public void flushCoalesced() {
+        for (CoalescingBuffer buffer : routeTable.coalescings()) {
+            buffer.flush(this);
+        }
+    }
+
+    /**
+     * 立即派发事件合并中的消息
+     *
+     * @param cmd 事件号
+     */
+    public void flushCoalesced(Object cmd) {
+        CoalescingBuffer buffer = routeTable.getCoalescing(cmd);
+        if (buffer != null) {
+            buffer.flush(this);
+        }
+    }
+
+    /**
+     * 合并窗口开始时安排窗口结束时的派发
+     *
+     * @param buffer 消息合并缓冲区
+     */
+    void scheduleFlush(CoalescingBuffer buffer) {
+        TimingWheel wheel = this.timingWheel;
+        if (wheel != null) {
+            wheel.newTimeout(() -> buffer.flush(this), buffer.windowMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        ScheduledExecutorService scheduleThreadPool = this.scheduleThreadPool;
+        if (scheduleThreadPool == null) {
+            throw new Error(String.format("事件%s开启了消息合并，请先调用 %s.initScheduleThreadPool或initTimingWheel方法初始化调度器", buffer.cmd, this.getClass().toString()));
+        }
+        scheduleThreadPool.schedule(() -> buffer.flush(this), buffer.windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 派发合并后的消息，单个消息处理异常不影响其它消息
+     *
+     * @param msg  合并后的消息
+     * @param asyn true为异步
+     */
+    void deliverCoalesced(Message msg, boolean asyn) {
+        final RouteTable.Route route = routeTable.get(msg.getWhat());
+        if (route == null) {
+            msg.release();
+            return;
+        }
+        try {
+            send(route, msg, asyn);
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 调度器结束时终止自身调度
+     *
+     * @param scheduler 调度器
+     */
+    void cancelSchedule(Scheduler scheduler) {
+        final boolean[] removed = new boolean[1];
+        schedulerMap.computeIfPresent(scheduler.name, (group, schedulers) -> {
+            removed[0] = schedulers.remove(scheduler.msg.what, scheduler);
+            return schedulers.isEmpty() ? null : schedulers;
+        });
+        scheduler.cancel();
+        ScheduleJournal journal = this.scheduleJournal;
+        if (removed[0] && scheduler.durable && journal != null) {
+            journal.cancel(scheduler.name, scheduler.msg.what);
         }
     }
 
@@ -638,14 +1577,14 @@ public class Facade implements INotifier {
      */
     @Override
     final public void sendMessage(final Message msg, Scheduler scheduler) {
-        if (scheduleThreadPool == null) {
-            throw new Error(String.format("执行sendMessage定时调度前请先调用 %s.initScheduleThreadPool方法初始化线程池", this.getClass().toString()));
+        TimingWheel wheel = this.timingWheel;
+        if (wheel == null && scheduleThreadPool == null) {
+            throw new Error(String.format("执行sendMessage定时调度前请先调用 %s.initScheduleThreadPool或initTimingWheel方法初始化调度器", this.getClass().toString()));
         }
         if (scheduler.facade != null && scheduler.msg != null) {
             throw new Error(String.format("每次调用sendMessage进行事件调度时必须保证%s参数为新的且独立的对象", Scheduler.class.getTypeName()));
         }
         Object cmd = msg.what;
-        scheduler.name += String.format("_$%s$_%s", cmd.getClass().getTypeName(), cmd);
         scheduler.facade = this;
         scheduler.msg = msg;
         long initDelay;
@@ -659,15 +1598,34 @@ public class Facade implements INotifier {
         } else {
             initDelay = 0;
         }
-        long delay;
         if (scheduler.interval <= 0) {
-            delay = 1;
+            scheduler.delay = 1;
         } else {
-            delay = scheduler.interval;
+            scheduler.delay = scheduler.interval;
+        }
+        ScheduleJournal journal = this.scheduleJournal;
+        if (journal != null) {
+            if (scheduler.durable) {
+                if (!scheduler.restored) {
+                    journal.add(scheduler);
+                }
+            } else {
+                journal.cancel(scheduler.name, cmd);
+            }
         }
-        cancelSchedule(scheduler.name);
-        ScheduledFuture<?> future = scheduleThreadPool.scheduleWithFixedDelay(scheduler, initDelay, delay, TimeUnit.MILLISECONDS);
-        scheduleFutureMap.put(scheduler.name, future);
+        //同组同事件的调度器唯一，后加入的替换之前的
+        final Scheduler[] prev = new Scheduler[1];
+        schedulerMap.compute(scheduler.name, (group, schedulers) -> {
+            if (schedulers == null) {
+                schedulers = new ConcurrentHashMap<>();
+            }
+            prev[0] = schedulers.put(cmd, scheduler);
+            return schedulers;
+        });
+        if (prev[0] != null) {
+            prev[0].cancel();
+        }
+        scheduler.start(wheel, scheduleThreadPool, initDelay);
     }
 
     /**
@@ -678,9 +1636,35 @@ public class Facade implements INotifier {
      */
     @Override
     final public void cancelSchedule(Object cmd, String group) {
-        String name = group;
-        name += String.format("_$%s$_%s", cmd.getClass().getTypeName(), cmd);
-        cancelSchedule(name);
+        final Scheduler[] removed = new Scheduler[1];
+        schedulerMap.computeIfPresent(group == null ? "" : group, (g, schedulers) -> {
+            removed[0] = schedulers.remove(cmd);
+            return schedulers.isEmpty() ? null : schedulers;
+        });
+        if (removed[0] != null) {
+            removed[0].cancel();
+        }
+        ScheduleJournal journal = this.scheduleJournal;
+        if (journal != null) {
+            journal.cancel(group == null ? "" : group, cmd);
+        }
+    }
+
+    /**
+     * 取消组内所有调度
+     *
+     * @param group 调度器组名
+     */
+    @Override
+    final public void cancelSchedules(String group) {
+        Map<Object, Scheduler> schedulers = schedulerMap.remove(group == null ? "" : group);
+        if (schedulers != null) {
+            schedulers.values().forEach(Scheduler::cancel);
+        }
+        ScheduleJournal journal = this.scheduleJournal;
+        if (journal != null) {
+            journal.cancelGroup(group == null ? "" : group);
+        }
     }
 
     /**
@@ -705,17 +1689,28 @@ public class Facade implements INotifier {
             String key = keys.next();
             proxyMap.remove(key);
         }
-        notiMediMap.clear();
         cmdPoolMap.clear();
+        routeTable.coalescings().forEach(CoalescingBuffer::clear);
+        routeTable.clear();
         mediaMap.clear();
         proxyMap.clear();
         this.threadPool = null;
-        keys = scheduleFutureMap.keySet().iterator();
-        while (keys.hasNext()) {
-            String key = keys.next();
-            this.cancelSchedule(key);
-        }
+        this.mailboxes = null;
+        this.ringDispatcher = null;
+        this.admission = null;
+        //仅停止调度，持久化的调度保留在日志中以便重启后恢复
+        schedulerMap.values().forEach(schedulers -> schedulers.values().forEach(Scheduler::cancel));
+        schedulerMap.clear();
+        this.scheduleJournal = null;
+        this.messageJournal = null;
         this.scheduleThreadPool = null;
+        FacadeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.dispose();
+            this.metrics = null;
+        }
+        stopOwnedTimingWheel();
+        this.timingWheel = null;
     }
 
 }
@@ -0,0 +1,139 @@
+package com.kaka.notice;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link Facade}的事件处理统计，每个{@link Facade}一个实例，按事件号汇总{@link CommandMetrics}
+ * <br>
+ * 统计对象及每个事件的统计均注册为MBean，ObjectName分别为
+ * com.kaka:type=Facade,name=内核名 及 com.kaka:type=Facade,name=内核名,cmd=事件号，
+ * 可通过JMX客户端查看并在运行时开启或关闭统计。
+ *
+ * @author zkpursuit
+ */
+public class FacadeMetrics implements FacadeMetricsMXBean {
+
+    private static final Logger logger = Logger.getLogger(FacadeMetrics.class.getTypeName());
+    private static final String DOMAIN = "com.kaka";
+
+    private final String facadeName;
+    private final Map<Object, CommandMetrics> metricsMap = new ConcurrentHashMap<>();
+    volatile boolean enabled;
+
+    FacadeMetrics(String facadeName) {
+        this.facadeName = facadeName == null ? "" : facadeName;
+        register(objectName(null), this);
+    }
+
+    private ObjectName objectName(Object cmd) {
+        try {
+            String name = String.format("%s:type=Facade,name=%s", DOMAIN, ObjectName.quote(facadeName));
+            if (cmd != null) {
+                name += ",cmd=" + ObjectName.quote(String.valueOf(cmd));
+            }
+            return new ObjectName(name);
+        } catch (JMException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private static void register(ObjectName name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (JMException | RuntimeException ex) {
+            logger.log(Level.WARNING, String.format("注册MBean %s失败", name), ex);
+        }
+    }
+
+    private static void unregister(ObjectName name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | RuntimeException ex) {
+            logger.log(Level.WARNING, String.format("注销MBean %s失败", name), ex);
+        }
+    }
+
+    /**
+     * 获取事件的统计，不存在时创建并注册MBean
+     *
+     * @param cmd 事件号
+     * @return 事件的统计
+     */
+    CommandMetrics metrics(Object cmd) {
+        CommandMetrics metrics = metricsMap.get(cmd);
+        if (metrics != null) {
+            return metrics;
+        }
+        return metricsMap.computeIfAbsent(cmd, key -> {
+            CommandMetrics created = new CommandMetrics(key);
+            register(objectName(key), created);
+            return created;
+        });
+    }
+
+    /**
+     * 获取事件的统计
+     *
+     * @param cmd 事件号
+     * @return 事件的统计，尚未统计时返回null
+     */
+    public CommandMetrics get(Object cmd) {
+        return metricsMap.get(cmd);
+    }
+
+    /**
+     * 所有事件的统计
+     *
+     * @return 只读的统计集合
+     */
+    public Collection<CommandMetrics> values() {
+        return Collections.unmodifiableCollection(metricsMap.values());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getCommandCount() {
+        return metricsMap.size();
+    }
+
+    @Override
+    public void reset() {
+        metricsMap.values().forEach(CommandMetrics::reset);
+    }
+
+    /**
+     * 注销所有MBean
+     */
+    void dispose() {
+        enabled = false;
+        metricsMap.keySet().forEach(cmd -> unregister(objectName(cmd)));
+        metricsMap.clear();
+        unregister(objectName(null));
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.kaka.notice;
+
+/**
+ * {@link Facade}事件处理统计的JMX管理接口
+ *
+ * @author zkpursuit
+ */
+public interface FacadeMetricsMXBean {
+
+    /**
+     * 是否正在统计
+     *
+     * @return true统计中
+     */
+    boolean isEnabled();
+
+    /**
+     * 开启或关闭统计，关闭后已有的统计数据保留
+     *
+     * @param enabled true开启
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * 已统计的事件数量
+     *
+     * @return 事件数量
+     */
+    int getCommandCount();
+
+    /**
+     * 清空所有事件的统计数据
+     */
+    void reset();
+
+}
@@ -0,0 +1,80 @@
+package com.kaka.notice;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 基于{@link CompletableFuture}的处理结果
+ * <br>
+ * 与{@link AsynResult}不同，获取结果时无需阻塞等待，可通过{@link #stage()}
+ * 注册回调或组合后续处理，事件处理器调用{@link #set(Object)}时完成。
+ *
+ * @author zkpursuit
+ * @param <V>
+ */
+public class FutureResult<V> implements IResult<V> {
+
+    /**
+     * {@link Facade#request(Message)}使用的默认处理结果名
+     */
+    public static final String DEFAULT_NAME = "FutureResult";
+
+    private final CompletableFuture<V> future = new CompletableFuture<>();
+
+    /**
+     * 赋值事件处理结果，仅第一次赋值有效
+     *
+     * @param result 事件处理结果
+     */
+    @Override
+    public void set(V result) {
+        future.complete(result);
+    }
+
+    /**
+     * 获取事件处理结果，不阻塞，未完成时返回null
+     *
+     * @return 事件处理结果
+     */
+    @Override
+    public V get() {
+        return future.getNow(null);
+    }
+
+    /**
+     * 事件处理失败
+     *
+     * @param ex 异常
+     */
+    public void fail(Throwable ex) {
+        future.completeExceptionally(ex);
+    }
+
+    /**
+     * 结果是否处理完成
+     *
+     * @return true处理完成
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * 获取处理结果的完成阶段，可注册回调或组合后续处理
+     *
+     * @return 完成阶段
+     */
+    public CompletionStage<V> stage() {
+        return future;
+    }
+
+    /**
+     * 获取处理结果对应的future
+     *
+     * @return future
+     */
+    public CompletableFuture<V> future() {
+        return future;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.kaka.notice;
 
+import java.util.Collection;
+
 /**
  * 消息通知发送接口
  *
@@ -22,6 +24,22 @@ interface INotifier {
      */
     void sendMessage(Message msg, boolean asyn);
 
+    /**
+     * 异步发送消息通知，并获知消息是否被接收
+     *
+     * @param msg 待发送的消息
+     * @return true 消息已被接收，false 消息被丢弃或拒绝
+     */
+    boolean offerMessage(Message msg);
+
+    /**
+     * 批量发送消息通知
+     *
+     * @param msgs 待发送的消息集合
+     * @param asyn true为异步，false为同步
+     */
+    void sendMessages(Collection<Message> msgs, boolean asyn);
+
     /**
      * 定时调度执行事件通知
      *
@@ -37,4 +55,11 @@ interface INotifier {
      * @param group 调度器组名
      */
     void cancelSchedule(Object cmd, String group);
+
+    /**
+     * 取消组内所有调度
+     *
+     * @param group 调度器组名
+     */
+    void cancelSchedules(String group);
 }
@@ -0,0 +1,109 @@
+package com.kaka.notice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 基于jdk序列化的{@link MessageCodec}，反序列化时按白名单过滤类型
+ * <br>
+ * 以--release 8编译，无法使用java.io.ObjectInputFilter，故在{@link ObjectInputStream#resolveClass(ObjectStreamClass)}
+ * 中于类加载前校验类名，效果与白名单过滤器相同；动态代理类一律拒绝。
+ *
+ * @author zkpursuit
+ */
+final class JdkCodec implements MessageCodec {
+
+    /**
+     * 不限制类型，仅用于本进程写出的可信数据，比如消息日志
+     */
+    static final JdkCodec UNRESTRICTED = new JdkCodec(null);
+
+    private static final Set<String> BASICS = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.Number", "java.lang.Enum", "java.lang.Boolean", "java.lang.Character",
+            "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double"));
+
+    private final String[] allowed;
+
+    /**
+     * 构造方法
+     *
+     * @param allowed 允许反序列化的类型，为null时不限制
+     */
+    JdkCodec(String[] allowed) {
+        this.allowed = allowed == null ? null : allowed.clone();
+    }
+
+    private boolean isAllowed(String name) {
+        int dim = 0;
+        while (dim < name.length() && name.charAt(dim) == '[') {
+            dim++;
+        }
+        if (dim > 0) {
+            //基础类型数组，比如[I
+            if (name.charAt(dim) != 'L') {
+                return true;
+            }
+            name = name.substring(dim + 1, name.length() - 1);
+        }
+        if (BASICS.contains(name)) {
+            return true;
+        }
+        for (String type : allowed) {
+            if (type.endsWith(".") || type.endsWith("$") ? name.startsWith(type) : name.equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] encode(Object obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(obj);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) throws IOException {
+        try (ObjectInputStream in = new FilteredInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private class FilteredInputStream extends ObjectInputStream {
+
+        FilteredInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (allowed != null && !isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "不在反序列化白名单中");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            if (allowed != null) {
+                throw new InvalidClassException(Arrays.toString(interfaces), "不允许反序列化动态代理类");
+            }
+            return super.resolveProxyClass(interfaces);
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.kaka.notice;
+
+import com.kaka.util.MappedFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 消息日志回放，将{@link MessageJournal}写入的分段按序号顺序重新派发到{@link Facade}
+ * <br>
+ * 回放可全速进行，也可按记录时的时间间隔（可加速或减速）还原流量的节奏；回放的消息不会再次写入目标{@link Facade}的消息日志。
+ * 无法解析的记录将被跳过并记录日志。
+ *
+ * @author zkpursuit
+ */
+public final class JournalReplayer {
+
+    private static final Logger logger = Logger.getLogger(JournalReplayer.class.getTypeName());
+
+    private final File dir;
+    private final MessageCodec codec;
+    private long fromSegment;
+
+    /**
+     * 构造方法
+     *
+     * @param dir   分段文件所在目录
+     * @param codec 写入日志时使用的序列化方式，为null时使用不限制类型的jdk序列化，日志须为可信数据
+     */
+    public JournalReplayer(File dir, MessageCodec codec) {
+        this.dir = dir;
+        this.codec = codec == null ? JdkCodec.UNRESTRICTED : codec;
+    }
+
+    /**
+     * 从指定序号的分段开始回放，比如从保存内存状态快照时{@link MessageJournal#rotate()}返回的分段开始
+     *
+     * @param index 分段序号
+     * @return this
+     */
+    public JournalReplayer fromSegment(long index) {
+        this.fromSegment = index;
+        return this;
+    }
+
+    /**
+     * 全速回放
+     *
+     * @param facade 目标{@link Facade}
+     * @param asyn   true为异步派发
+     * @return 回放的消息数量
+     * @throws IOException 文件读写异常
+     */
+    public long replay(Facade facade, boolean asyn) throws IOException {
+        return replay(facade, asyn, 0);
+    }
+
+    /**
+     * 回放
+     *
+     * @param facade 目标{@link Facade}
+     * @param asyn   true为异步派发
+     * @param speed  回放速度倍率，1为按记录时的节奏回放，2为两倍速，小于等于0为全速回放
+     * @return 回放的消息数量
+     * @throws IOException 文件读写异常
+     */
+    public long replay(Facade facade, boolean asyn, double speed) throws IOException {
+        return replay(msg -> facade.replayMessage(msg, asyn), speed);
+    }
+
+    /**
+     * 回放到指定的消费者，比如用于统计或转发
+     *
+     * @param consumer 消息消费者
+     * @param speed    回放速度倍率，1为按记录时的节奏回放，小于等于0为全速回放
+     * @return 回放的消息数量
+     * @throws IOException 文件读写异常
+     */
+    public long replay(Consumer<Message> consumer, double speed) throws IOException {
+        Pacer pacer = new Pacer(speed);
+        long count = 0;
+        List<File> segments = MessageJournal.segments(dir);
+        for (File file : segments) {
+            if (MessageJournal.index(file) < fromSegment) {
+                continue;
+            }
+            long[] n = new long[1];
+            try (MappedFile segment = new MappedFile(file, 0, false)) {
+                segment.scan(data -> {
+                    Message msg = decode(data, pacer, file);
+                    if (msg != null) {
+                        consumer.accept(msg);
+                        n[0]++;
+                    }
+                });
+            }
+            count += n[0];
+        }
+        return count;
+    }
+
+    private Message decode(ByteBuffer data, Pacer pacer, File file) {
+        try {
+            int flags = data.get();
+            Object cmd = readValue(data, flags & MessageJournal.CMD_MASK);
+            long timestamp = data.getLong();
+            Object partitionKey = null;
+            if ((flags & MessageJournal.FLAG_PARTITION_KEY) != 0) {
+                partitionKey = readValue(data, data.get());
+            }
+            Object body = null;
+            if ((flags & MessageJournal.FLAG_BODY) != 0) {
+                body = readValue(data, data.get());
+            }
+            pacer.await(timestamp);
+            Message msg = new Message(cmd, body);
+            msg.setPartitionKey(partitionKey);
+            return msg;
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.SEVERE, String.format("消息日志%s中存在无法解析的记录", file), ex);
+            return null;
+        }
+    }
+
+    private Object readValue(ByteBuffer data, int type) throws IOException {
+        switch (type) {
+            case MessageJournal.CMD_NULL:
+                return null;
+            case MessageJournal.CMD_INT:
+                return data.getInt();
+            case MessageJournal.CMD_SHORT:
+                return data.getShort();
+            case MessageJournal.CMD_LONG:
+                return data.getLong();
+            case MessageJournal.CMD_STRING:
+                return new String(bytes(data, data.getInt()), StandardCharsets.UTF_8);
+            case MessageJournal.CMD_BYTES:
+                return bytes(data, data.getInt());
+            case MessageJournal.CMD_OBJECT:
+                byte[] bytes = bytes(data, data.getInt());
+                return codec.decode(bytes, 0, bytes.length);
+            default:
+                throw new IOException("未知的记录类型：" + type);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer data, int length) {
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 按记录时间戳控制回放节奏
+     */
+    private static final class Pacer {
+        private final double speed;
+        private long firstTimestamp = Long.MIN_VALUE;
+        private long startNanos;
+
+        Pacer(double speed) {
+            this.speed = speed;
+        }
+
+        void await(long timestamp) {
+            if (speed <= 0) {
+                return;
+            }
+            if (firstTimestamp == Long.MIN_VALUE) {
+                firstTimestamp = timestamp;
+                startNanos = System.nanoTime();
+                return;
+            }
+            long deadline = startNanos + (long) ((timestamp - firstTimestamp) / speed);
+            long wait;
+            while ((wait = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+}
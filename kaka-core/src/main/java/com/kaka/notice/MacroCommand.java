@@ -45,19 +45,38 @@ abstract public class MacroCommand extends Command {
     }
 
     /**
-     * 执行所有子命令
+     * 获取所有子命令
+     *
+     * @return 子命令
+     */
+    final Collection<Command> subCommands() {
+        return this.subCommands;
+    }
+
+    /**
+     * 将子命令绑定到本命令所属的{@link Facade}及命令号，已绑定时不再写入，
+     * 故以无状态模式注册时子命令仅在首次执行时被修改
+     */
+    final void bindSubCommands() {
+        for (Command command : subCommands) {
+            if (command.facade != facade || command.cmd != cmd) {
+                command.cmd = cmd;
+                command.facade = facade;
+            }
+        }
+    }
+
+    /**
+     * 依次执行所有子命令
      *
      * @param msg 事件消息
      */
     @Override
     public void execute(Message msg) {
-        subCommands.stream().map((command) -> {
-            command.cmd = cmd;
-            command.facade = facade;
-            return command;
-        }).forEach((command) -> {
+        bindSubCommands();
+        for (Command command : subCommands) {
             command.execute(msg);
-        });
+        }
     }
 
 }
\ No newline at end of file
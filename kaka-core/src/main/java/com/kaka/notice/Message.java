@@ -1,8 +1,13 @@
 package com.kaka.notice;
 
 import com.kaka.util.ObjectPool.Poolable;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * 消息通知对象
@@ -11,9 +16,23 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Message implements Poolable {
 
+    private static final AtomicIntegerFieldUpdater<Message> REF_CNT_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Message.class, "refCnt");
+    static final AtomicLongFieldUpdater<Message> ENQUEUE_NANOS_UPDATER = AtomicLongFieldUpdater.newUpdater(Message.class, "enqueueNanos");
+
     protected Object what;
     protected Object body;
+    protected Object partitionKey;
+    /**
+     * 异步派发时进入队列的时间点，仅在开启事件处理统计时记录
+     */
+    volatile long enqueueNanos;
     private Map<Object, IResult> resultMap;
+    private MessagePool pool;
+    /**
+     * 是否进行引用计数，池化的消息及{@link Facade#request(Message)}派发的消息在引用计数归零前为true
+     */
+    private boolean counted;
+    private volatile int refCnt;
 
     /**
      * 构造方法
@@ -35,6 +54,105 @@ public class Message implements Poolable {
         this(what, null);
     }
 
+    /**
+     * 从默认消息池中取出一个消息，其引用计数为1
+     * <br>
+     * 消息派发后由{@link com.kaka.notice.Facade}在所有事件处理器处理完成后释放并放回消息池，
+     * 派发后调用方不应再使用此消息。
+     *
+     * @param what 消息通知标识
+     * @param body 绑定的数据
+     * @return 消息
+     */
+    public static Message obtain(Object what, Object body) {
+        return MessagePool.DEFAULT.obtain(what, body);
+    }
+
+    /**
+     * 从默认消息池中取出一个消息，其引用计数为1
+     *
+     * @param what 消息通知标识
+     * @return 消息
+     */
+    public static Message obtain(Object what) {
+        return MessagePool.DEFAULT.obtain(what, null);
+    }
+
+    /**
+     * 标记为从消息池中取出
+     *
+     * @param pool 消息池
+     */
+    final void pooled(MessagePool pool) {
+        this.pool = pool;
+        this.counted = true;
+        REF_CNT_UPDATER.set(this, 1);
+    }
+
+    /**
+     * 非池化的消息开始引用计数，其引用计数为1，以便在所有事件处理器处理完成后获知
+     */
+    final void track() {
+        if (!counted) {
+            this.counted = true;
+            REF_CNT_UPDATER.set(this, 1);
+        }
+    }
+
+    /**
+     * 增加引用计数，非池化的消息无任何作用
+     * <br>
+     * 事件处理器须在处理返回后才为{@link FutureResult}赋值时，应先调用此方法，赋值后再调用{@link #release()}。
+     *
+     * @return 消息本身
+     */
+    public final Message retain() {
+        if (counted) {
+            int count = REF_CNT_UPDATER.incrementAndGet(this);
+            if (count <= 1) {
+                throw new IllegalStateException("消息已被释放，refCnt：" + (count - 1));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 减少引用计数，引用计数归零时尚未完成的{@link FutureResult}以null完成，消息被重置并放回消息池，
+     * 非池化的消息无任何作用
+     *
+     * @return true 消息已被放回消息池
+     */
+    public final boolean release() {
+        if (!counted) {
+            return false;
+        }
+        int count = REF_CNT_UPDATER.decrementAndGet(this);
+        if (count == 0) {
+            this.counted = false;
+            completeResults(null);
+            MessagePool _pool = this.pool;
+            if (_pool == null) {
+                return false;
+            }
+            this.pool = null;
+            _pool.idle(this);
+            return true;
+        }
+        if (count < 0) {
+            throw new IllegalStateException("消息已被释放，refCnt：" + count);
+        }
+        return false;
+    }
+
+    /**
+     * 获取引用计数，未进行引用计数的消息始终为0
+     *
+     * @return 引用计数
+     */
+    public final int refCnt() {
+        return this.refCnt;
+    }
+
     public Object getWhat() {
         return this.what;
     }
@@ -43,6 +161,29 @@ public class Message implements Poolable {
         return this.body;
     }
 
+    /**
+     * 获取分区键
+     *
+     * @return 分区键，可能为null
+     */
+    public Object getPartitionKey() {
+        return this.partitionKey;
+    }
+
+    /**
+     * 设置分区键，比如玩家id、房间id
+     * <br>
+     * 异步派发时，若{@link com.kaka.notice.Facade}配置了分区邮箱，
+     * 相同分区键的消息将按派发顺序依次处理，且处理过程互不重叠。
+     *
+     * @param partitionKey 分区键
+     * @return 消息本身
+     */
+    public Message setPartitionKey(Object partitionKey) {
+        this.partitionKey = partitionKey;
+        return this;
+    }
+
     /**
      * 初始化设置事件通知处理结果
      *
@@ -77,10 +218,51 @@ public class Message implements Poolable {
         }
     }
 
+    /**
+     * 获取所有处理结果的标识名
+     *
+     * @return 标识名的快照，无处理结果时为空集合
+     */
+    public Set<Object> getResultNames() {
+        synchronized (this) {
+            if (this.resultMap == null || this.resultMap.isEmpty()) {
+                return Collections.emptySet();
+            }
+            return new HashSet<>(this.resultMap.keySet());
+        }
+    }
+
+    /**
+     * 完成尚未完成的{@link FutureResult}
+     *
+     * @param ex 为null时以null完成，否则以此异常完成
+     */
+    final void completeResults(Throwable ex) {
+        Map<Object, IResult> results;
+        synchronized (this) {
+            results = this.resultMap;
+        }
+        if (results == null) {
+            return;
+        }
+        for (IResult result : results.values()) {
+            if (result instanceof FutureResult) {
+                FutureResult<?> future = (FutureResult<?>) result;
+                if (ex == null) {
+                    future.set(null);
+                } else {
+                    future.fail(ex);
+                }
+            }
+        }
+    }
+
     @Override
     public void reset() {
         this.what = null;
         this.body = null;
+        this.partitionKey = null;
+        this.enqueueNanos = 0;
         if (this.resultMap != null) {
             this.resultMap.clear();
         }
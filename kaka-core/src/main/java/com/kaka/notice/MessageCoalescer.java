@@ -0,0 +1,42 @@
+package com.kaka.notice;
+
+/**
+ * 消息合并器，用于高频事件的合并派发
+ * <br>
+ * 同一事件号且合并键相同的消息在合并窗口内（或下次调用{@link Facade#flushCoalesced()}之前）相互替换或合并，
+ * 窗口结束时仅派发一次。
+ * <br>
+ * 实现类须有无参构造方法才能在{@link com.kaka.notice.annotation.Handler#coalescer()}中使用。
+ *
+ * @author zkpursuit
+ */
+public interface MessageCoalescer {
+
+    /**
+     * 默认合并器：以消息分区键为合并键，后到的消息替换之前的消息
+     */
+    MessageCoalescer LATEST = new MessageCoalescer() {
+    };
+
+    /**
+     * 获取消息的合并键，合并键相同的消息才会被合并
+     *
+     * @param msg 消息
+     * @return 合并键，可为null
+     */
+    default Object coalesceKey(Message msg) {
+        return msg.getPartitionKey();
+    }
+
+    /**
+     * 合并消息，被替换的消息将被释放，其携带的处理结果（{@link IResult}）不会被设置
+     *
+     * @param pending  等待派发的消息
+     * @param incoming 新到达的消息
+     * @return 合并后的消息，可为两者之一，也可为新的消息
+     */
+    default Message combine(Message pending, Message incoming) {
+        return incoming;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.kaka.notice;
+
+import java.io.IOException;
+
+/**
+ * 消息体（及非基础类型的事件号）的序列化方式，用于消息日志、跨进程消息桥等需要将消息写出进程的场景
+ *
+ * @author zkpursuit
+ */
+public interface MessageCodec {
+
+    /**
+     * 基于jdk序列化的实现，对象须实现{@link java.io.Serializable}
+     * <br>
+     * 反序列化时仅允许白名单中的类型（及String、基础类型的包装类和数组），其它类型在加载前即被拒绝，
+     * 以免反序列化网络数据时构造出任意类型的对象；即便如此，jdk序列化也仅应在可信网络中使用，
+     * 跨越信任边界时应使用JSON、Protobuf等不依赖类型信息的序列化方式。
+     *
+     * @param allowed 允许反序列化的类型，以“.”或“$”结尾时表示以其为前缀的所有类型，比如“com.game.model.”
+     * @return 序列化方式
+     */
+    static MessageCodec jdk(String... allowed) {
+        return new JdkCodec(allowed);
+    }
+
+    /**
+     * 序列化
+     *
+     * @param obj 待序列化的对象，不为null
+     * @return 序列化后的字节
+     * @throws IOException 序列化异常
+     */
+    byte[] encode(Object obj) throws IOException;
+
+    /**
+     * 反序列化
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 反序列化后的对象
+     * @throws IOException 反序列化异常
+     */
+    Object decode(byte[] bytes, int offset, int length) throws IOException;
+
+}
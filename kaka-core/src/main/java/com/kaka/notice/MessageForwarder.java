@@ -0,0 +1,20 @@
+package com.kaka.notice;
+
+/**
+ * 消息转发器，将声明为远程的事件转发至其它进程处理，由{@link Facade#setRemote(Object, MessageForwarder)}设置
+ * <br>
+ * {@link #forward(Message)}返回后消息即被释放，实现类须在此方法内完成消息的序列化，不可持有消息对象；
+ * 消息携带的处理结果容器可由实现类持有，在远程处理完成后赋值。
+ *
+ * @author zkpursuit
+ */
+public interface MessageForwarder {
+
+    /**
+     * 转发消息
+     *
+     * @param msg 待转发的消息
+     */
+    void forward(Message msg);
+
+}
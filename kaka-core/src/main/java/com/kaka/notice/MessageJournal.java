@@ -0,0 +1,369 @@
+package com.kaka.notice;
+
+import com.kaka.util.MappedFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 消息日志，将选定事件的消息追加写入按大小滚动的内存映射分段文件
+ * <br>
+ * 通过{@link Facade#initMessageJournal(MessageJournal)}启用后，发送到{@link Facade}的选定事件在派发前写入日志；
+ * 之后可由{@link JournalReplayer}将日志重新派发到{@link Facade}，用于恢复内存状态或回放线上流量进行压测。
+ * <br>
+ * 每条记录由事件号、纳秒级时间戳、分区键及消息体组成，事件号、分区键及消息体为int、short、long、String、byte[]时直接编码，
+ * 其它类型由{@link MessageCodec}序列化；消息携带的处理结果不写入日志。
+ * 记录在线程本地的缓冲区中编码完成后才进入写入锁，锁内仅复制到映射内存。
+ * <br>
+ * 分段文件名为20位的分段序号，当前分段写满后关闭并创建下一个分段，重新打开时从最后一个分段的有效结尾处继续写入。
+ *
+ * @author zkpursuit
+ */
+public final class MessageJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(MessageJournal.class.getTypeName());
+
+    static final String SUFFIX = ".log";
+
+    static final int CMD_NULL = 0;
+    static final int CMD_INT = 1;
+    static final int CMD_SHORT = 2;
+    static final int CMD_LONG = 3;
+    static final int CMD_STRING = 4;
+    static final int CMD_OBJECT = 5;
+    static final int CMD_BYTES = 6;
+    static final int CMD_MASK = 0x07;
+    static final int FLAG_PARTITION_KEY = 0x08;
+    static final int FLAG_BODY = 0x10;
+
+    private final File dir;
+    private final int segmentSize;
+    private final MessageCodec codec;
+    private final Set<Object> cmds;
+    private final long baseEpochNanos;
+    private final long baseNanoTime;
+    private long segmentIndex;
+    private MappedFile segment;
+    private volatile boolean closed;
+
+    /**
+     * 构造方法
+     *
+     * @param dir         分段文件所在目录，不存在时自动创建
+     * @param segmentSize 分段文件大小
+     * @param codec       消息体序列化方式，为null时使用不限制类型的jdk序列化
+     * @param cmds        需写入日志的事件号，为null或空时写入所有事件
+     * @throws IOException 文件读写异常
+     */
+    public MessageJournal(File dir, int segmentSize, MessageCodec codec, Collection<?> cmds) throws IOException {
+        if (segmentSize <= 1024) {
+            throw new IllegalArgumentException("segmentSize must be > 1024: " + segmentSize);
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException(String.format("无法创建消息日志目录%s", dir));
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.codec = codec == null ? JdkCodec.UNRESTRICTED : codec;
+        this.cmds = cmds == null || cmds.isEmpty() ? null : new HashSet<>(cmds);
+        this.baseEpochNanos = System.currentTimeMillis() * 1000000L;
+        this.baseNanoTime = System.nanoTime();
+        List<File> segments = segments(dir);
+        this.segmentIndex = segments.isEmpty() ? 0 : index(segments.get(segments.size() - 1));
+        this.segment = new MappedFile(segmentFile(dir, segmentIndex), segmentSize, false);
+    }
+
+    /**
+     * 构造方法，分段文件大小64MB，使用不限制类型的jdk序列化
+     *
+     * @param dir  分段文件所在目录
+     * @param cmds 需写入日志的事件号，为空时写入所有事件
+     * @throws IOException 文件读写异常
+     */
+    public MessageJournal(File dir, Object... cmds) throws IOException {
+        this(dir, 64 * 1024 * 1024, null, Arrays.asList(cmds));
+    }
+
+    static File segmentFile(File dir, long index) {
+        return new File(dir, String.format("%020d%s", index, SUFFIX));
+    }
+
+    static long index(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * 目录中按序号排列的所有分段文件
+     *
+     * @param dir 分段文件所在目录
+     * @return 分段文件
+     */
+    static List<File> segments(File dir) {
+        File[] files = dir.listFiles((File d, String name) -> name.endsWith(SUFFIX) && name.length() == 20 + SUFFIX.length());
+        List<File> list = new ArrayList<>();
+        if (files != null) {
+            list.addAll(Arrays.asList(files));
+            Collections.sort(list);
+        }
+        return list;
+    }
+
+    /**
+     * 事件是否需要写入日志
+     *
+     * @param cmd 事件号
+     * @return true需要写入
+     */
+    public boolean accepts(Object cmd) {
+        return cmds == null || cmds.contains(cmd);
+    }
+
+    /**
+     * 编码消息并写入日志
+     *
+     * @param msg 消息
+     */
+    void append(Message msg) {
+        try {
+            Encoder encoder = ENCODER.get();
+            encode(msg, encoder);
+            byte[] record = encoder.buf;
+            int length = encoder.pos;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (segment.append(record, 0, length) < 0) {
+                    segment.close();
+                    segmentIndex++;
+                    segment = new MappedFile(segmentFile(dir, segmentIndex), segmentSize, false);
+                    if (segment.append(record, 0, length) < 0) {
+                        throw new IOException(String.format("消息%s超出消息日志分段大小", msg.what));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, String.format("写入消息日志失败：%s", msg.what), ex);
+        }
+    }
+
+    private void encode(Message msg, Encoder out) throws IOException {
+        out.pos = 0;
+        int flags = type(msg.what);
+        if (msg.partitionKey != null) {
+            flags |= FLAG_PARTITION_KEY;
+        }
+        if (msg.body != null) {
+            flags |= FLAG_BODY;
+        }
+        out.putByte(flags);
+        if (msg.what != null) {
+            writeValue(out, flags & CMD_MASK, msg.what);
+        }
+        out.putLong(baseEpochNanos + (System.nanoTime() - baseNanoTime));
+        if (msg.partitionKey != null) {
+            int type = type(msg.partitionKey);
+            out.putByte(type);
+            writeValue(out, type, msg.partitionKey);
+        }
+        if (msg.body != null) {
+            int type = type(msg.body);
+            out.putByte(type);
+            writeValue(out, type, msg.body);
+        }
+    }
+
+    private static int type(Object value) {
+        if (value == null) {
+            return CMD_NULL;
+        }
+        if (value instanceof Integer) {
+            return CMD_INT;
+        }
+        if (value instanceof Short) {
+            return CMD_SHORT;
+        }
+        if (value instanceof Long) {
+            return CMD_LONG;
+        }
+        if (value instanceof String) {
+            return CMD_STRING;
+        }
+        if (value instanceof byte[]) {
+            return CMD_BYTES;
+        }
+        return CMD_OBJECT;
+    }
+
+    private void writeValue(Encoder out, int type, Object value) throws IOException {
+        switch (type) {
+            case CMD_INT:
+                out.putInt((Integer) value);
+                break;
+            case CMD_SHORT:
+                out.putShort((Short) value);
+                break;
+            case CMD_LONG:
+                out.putLong((Long) value);
+                break;
+            case CMD_STRING:
+                out.putString((String) value);
+                break;
+            case CMD_BYTES:
+                byte[] bytes = (byte[]) value;
+                out.putInt(bytes.length);
+                out.putBytes(bytes);
+                break;
+            case CMD_OBJECT:
+                byte[] encoded = codec.encode(value);
+                out.putInt(encoded.length);
+                out.putBytes(encoded);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+
+    /**
+     * 线程本地的可扩容编码缓冲区，只增不减，单条记录编码时不再分配内存（{@link MessageCodec}序列化的部分除外）
+     */
+    private static final class Encoder {
+        byte[] buf = new byte[256];
+        int pos;
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+            }
+        }
+
+        void putByte(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+        }
+
+        void putShort(short v) {
+            ensure(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        void putBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        /**
+         * 以[int 长度][UTF-8字节]编码字符串，纯ASCII字符串直接写入缓冲区
+         */
+        void putString(String s) {
+            int len = s.length();
+            int start = pos;
+            putInt(len);
+            ensure(len);
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    pos = start;
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    putInt(bytes.length);
+                    putBytes(bytes);
+                    return;
+                }
+                buf[pos++] = (byte) c;
+            }
+        }
+    }
+
+    /**
+     * 关闭当前分段并开始写入新的分段，比如在保存内存状态快照之后调用，此后恢复时仅需回放新分段
+     *
+     * @return 新分段的序号
+     * @throws IOException 文件读写异常
+     */
+    public synchronized long rotate() throws IOException {
+        segment.close();
+        segmentIndex++;
+        segment = new MappedFile(segmentFile(dir, segmentIndex), segmentSize, false);
+        return segmentIndex;
+    }
+
+    /**
+     * 删除序号小于指定序号的分段
+     *
+     * @param index 分段序号
+     * @return 删除的分段数量
+     */
+    public synchronized int deleteSegmentsBefore(long index) {
+        int count = 0;
+        for (File file : segments(dir)) {
+            if (index(file) < index && index(file) != segmentIndex && file.delete()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 当前写入的分段序号
+     *
+     * @return 分段序号
+     */
+    public synchronized long currentSegment() {
+        return segmentIndex;
+    }
+
+    /**
+     * 将已写入的记录强制刷入磁盘
+     */
+    public synchronized void force() {
+        if (!closed) {
+            segment.force();
+        }
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            segment.close();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.kaka.notice;
+
+import com.kaka.util.ObjectPool;
+
+/**
+ * {@link com.kaka.notice.Message}对象池
+ * <br>
+ * 从池中取出的消息引用计数为1，经{@link com.kaka.notice.Facade}派发后，由Facade在
+ * {@link com.kaka.notice.Command}及所有{@link com.kaka.notice.Mediator}（同步或异步）处理完成后
+ * 释放引用，引用计数归零时消息被重置并放回对象池。
+ * <br>
+ * 事件处理器中如需在处理完成后继续持有消息（比如交由其它线程处理），
+ * 必须先调用{@link Message#retain()}，使用完毕后再调用{@link Message#release()}。
+ *
+ * @author zkpursuit
+ */
+public class MessagePool extends ObjectPool<Message> {
+
+    /**
+     * 默认消息池，{@link Message#obtain(Object, Object)}从此池中取出消息
+     */
+    static final MessagePool DEFAULT = new MessagePool(4096);
+
+    /**
+     * 构造方法
+     *
+     * @param max 对象池中可缓存的最大消息数量
+     */
+    public MessagePool(int max) {
+        super(max);
+    }
+
+    @Override
+    protected Message newObject() {
+        return new Message(null, null);
+    }
+
+    /**
+     * 从池中取出一个消息，其引用计数为1
+     *
+     * @param what 消息通知标识
+     * @param body 绑定的数据
+     * @return 消息
+     */
+    public Message obtain(Object what, Object body) {
+        Message msg = obtain();
+        msg.what = what;
+        msg.body = body;
+        msg.pooled(this);
+        return msg;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.kaka.notice;
 
+import java.util.Collection;
+
 /**
  * 消息通知者
  *
@@ -36,6 +38,33 @@ abstract public class Notifier implements INotifier {
         }
     }
 
+    /**
+     * 异步发送消息，并获知消息是否被接收
+     *
+     * @param msg 待发送的消息
+     * @return true 消息已被接收，false 消息被丢弃、拒绝或未注册到{@link Facade}
+     */
+    @Override
+    public final boolean offerMessage(Message msg) {
+        if (facade != null) {
+            return facade.offerMessage(msg);
+        }
+        return false;
+    }
+
+    /**
+     * 批量发送消息
+     *
+     * @param msgs 待发送的消息集合
+     * @param asyn true为异步，false为同步
+     */
+    @Override
+    public final void sendMessages(Collection<Message> msgs, boolean asyn) {
+        if (facade != null) {
+            facade.sendMessages(msgs, asyn);
+        }
+    }
+
     /**
      * 定时调度执行事件通知
      *
@@ -62,6 +91,18 @@ abstract public class Notifier implements INotifier {
         }
     }
 
+    /**
+     * 取消组内所有调度
+     *
+     * @param group 调度器组名
+     */
+    @Override
+    public void cancelSchedules(String group) {
+        if (facade != null) {
+            facade.cancelSchedules(group);
+        }
+    }
+
     /**
      * 获取通知派发器
      *
@@ -0,0 +1,29 @@
+package com.kaka.notice;
+
+/**
+ * 异步消息超出{@link Facade}在途数量限制时的处理策略
+ *
+ * @author zkpursuit
+ * @see Facade#initAdmissionControl(int, OverflowPolicy, RejectedMessageHandler)
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 在调用sendMessage的线程中同步处理消息，从而自然减缓生产者的发送速度
+     */
+    CALLER_RUNS,
+    /**
+     * 丢弃最早提交且尚未开始处理的消息，接收新消息
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃新消息
+     */
+    DROP_NEWEST,
+    /**
+     * 拒绝新消息，sendMessage抛出{@link java.util.concurrent.RejectedExecutionException}，
+     * offerMessage返回false
+     */
+    FAIL_FAST
+
+}
@@ -0,0 +1,100 @@
+package com.kaka.notice;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 并行执行子命令的控制命令类，适用于多个互不依赖的子命令（比如登录时的多项查询）
+ * <br>
+ * 子命令在{@link ForkJoinPool}中并行执行，其中一个在当前线程中执行，所有子命令完成后{@link #execute(Message)}才返回，
+ * 故消息在子命令中始终有效；子命令抛出异常时，待其余子命令完成后抛出第一个异常，其它异常作为其被抑制的异常。
+ * <br>
+ * 子命令并发读取同一消息，通过消息设置处理结果时须使用不同的结果名。
+ * 子命令中存在阻塞操作（比如数据库查询）时，应通过构造方法传入独立的{@link ForkJoinPool}，避免占满公共线程池。
+ *
+ * @author zkpursuit
+ */
+abstract public class ParallelMacroCommand extends MacroCommand {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * 构造方法，使用{@link ForkJoinPool#commonPool()}
+     */
+    public ParallelMacroCommand() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param pool 执行子命令的线程池
+     */
+    public ParallelMacroCommand(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 并行执行所有子命令
+     *
+     * @param msg 事件消息
+     */
+    @Override
+    public void execute(Message msg) {
+        bindSubCommands();
+        Collection<Command> commands = subCommands();
+        int size = commands.size();
+        if (size == 0) {
+            return;
+        }
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[size - 1];
+        Command last = null;
+        int i = 0;
+        boolean inPool = ForkJoinTask.getPool() == pool;
+        for (Command command : commands) {
+            if (i == tasks.length) {
+                last = command;
+                break;
+            }
+            ForkJoinTask<?> task = ForkJoinTask.adapt(() -> command.execute(msg));
+            if (inPool) {
+                task.fork();
+            } else {
+                pool.execute(task);
+            }
+            tasks[i++] = task;
+        }
+        Throwable error = null;
+        try {
+            last.execute(msg);
+        } catch (RuntimeException | Error ex) {
+            error = ex;
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException | Error ex) {
+                if (error == null) {
+                    error = ex;
+                } else {
+                    error.addSuppressed(ex);
+                }
+            }
+        }
+        rethrow(error);
+    }
+
+    static void rethrow(Throwable error) {
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.kaka.notice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 按依赖关系并行执行子命令的控制命令类
+ * <br>
+ * 在{@link #initializeMacroCommand()}中通过{@link #addStage(String, Command, String...)}添加具名的阶段并声明其依赖的阶段，
+ * 子命令构成有向无环图：无依赖的阶段立即并行执行，其余阶段在所依赖的阶段全部完成后执行；
+ * 通过{@link #addSubCommand(Command)}添加的子命令视为无依赖的阶段。依赖不存在或存在环时在构造时抛出{@link Error}。
+ * <br>
+ * 所有阶段完成后{@link #execute(Message)}才返回；某阶段抛出异常时，依赖它的阶段不再执行，
+ * 其余阶段正常执行，全部结束后抛出第一个异常。前序阶段可通过消息的处理结果向后续阶段传递数据。
+ *
+ * @author zkpursuit
+ */
+abstract public class PipelineMacroCommand extends MacroCommand {
+
+    /**
+     * 具名阶段，子类字段初始化晚于{@link #initializeMacroCommand()}的调用，故延迟创建
+     */
+    private Map<String, Stage> stages;
+    private final ForkJoinPool pool;
+    /**
+     * 按拓扑顺序排列的阶段
+     */
+    private final Stage[] ordered;
+
+    /**
+     * 构造方法，使用{@link ForkJoinPool#commonPool()}
+     */
+    public PipelineMacroCommand() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param pool 执行子命令的线程池
+     */
+    public PipelineMacroCommand(ForkJoinPool pool) {
+        this.pool = pool;
+        this.ordered = sort();
+    }
+
+    /**
+     * 添加阶段
+     *
+     * @param name      阶段名，不可重复
+     * @param command   子命令
+     * @param dependsOn 依赖的阶段名
+     */
+    final protected void addStage(String name, Command command, String... dependsOn) {
+        if (stages == null) {
+            stages = new LinkedHashMap<>();
+        }
+        if (stages.containsKey(name)) {
+            throw new Error(String.format("%s中的阶段%s重复", getClass().getTypeName(), name));
+        }
+        stages.put(name, new Stage(name, command, dependsOn));
+        addSubCommand(command);
+    }
+
+    /**
+     * 校验依赖并按拓扑顺序排列所有阶段
+     */
+    private Stage[] sort() {
+        Map<String, Stage> named = stages == null ? new HashMap<>() : stages;
+        Map<Command, Stage> byCommand = new IdentityHashMap<>();
+        named.values().forEach(stage -> byCommand.put(stage.command, stage));
+        List<Stage> all = new ArrayList<>();
+        for (Command command : subCommands()) {
+            Stage stage = byCommand.get(command);
+            all.add(stage != null ? stage : new Stage(null, command, new String[0]));
+        }
+        for (Stage stage : all) {
+            for (String dep : stage.dependsOn) {
+                Stage depStage = named.get(dep);
+                if (depStage == null) {
+                    throw new Error(String.format("%s中的阶段%s依赖的阶段%s不存在", getClass().getTypeName(), stage.name, dep));
+                }
+                stage.deps.add(depStage);
+            }
+        }
+        List<Stage> sorted = new ArrayList<>(all.size());
+        Map<Stage, Integer> marks = new IdentityHashMap<>();
+        for (Stage stage : all) {
+            visit(stage, marks, sorted);
+        }
+        for (int i = 0; i < sorted.size(); i++) {
+            sorted.get(i).index = i;
+        }
+        return sorted.toArray(new Stage[0]);
+    }
+
+    private void visit(Stage stage, Map<Stage, Integer> marks, List<Stage> sorted) {
+        Integer mark = marks.get(stage);
+        if (mark != null) {
+            if (mark == 1) {
+                throw new Error(String.format("%s中的阶段%s存在循环依赖", getClass().getTypeName(), stage.name));
+            }
+            return;
+        }
+        marks.put(stage, 1);
+        for (Stage dep : stage.deps) {
+            visit(dep, marks, sorted);
+        }
+        marks.put(stage, 2);
+        sorted.add(stage);
+    }
+
+    /**
+     * 按依赖关系执行所有阶段
+     *
+     * @param msg 事件消息
+     */
+    @Override
+    public void execute(Message msg) {
+        bindSubCommands();
+        Stage[] stages = this.ordered;
+        if (stages.length == 0) {
+            return;
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[stages.length];
+        for (Stage stage : stages) {
+            Runnable task = () -> stage.command.execute(msg);
+            int deps = stage.deps.size();
+            CompletableFuture<?> future;
+            if (deps == 0) {
+                future = CompletableFuture.runAsync(task, pool);
+            } else if (deps == 1) {
+                future = futures[stage.deps.get(0).index].thenRunAsync(task, pool);
+            } else {
+                CompletableFuture<?>[] depFutures = new CompletableFuture<?>[deps];
+                for (int i = 0; i < deps; i++) {
+                    depFutures[i] = futures[stage.deps.get(i).index];
+                }
+                future = CompletableFuture.allOf(depFutures).thenRunAsync(task, pool);
+            }
+            futures[stage.index] = future;
+        }
+        Throwable error = null;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                if (error == null) {
+                    error = cause;
+                } else if (error != cause) {
+                    error.addSuppressed(cause);
+                }
+            }
+        }
+        ParallelMacroCommand.rethrow(error);
+    }
+
+    /**
+     * 阶段
+     */
+    private static final class Stage {
+        final String name;
+        final Command command;
+        final List<String> dependsOn;
+        final List<Stage> deps = new ArrayList<>();
+        int index;
+
+        Stage(String name, Command command, String[] dependsOn) {
+            this.name = name;
+            this.command = command;
+            this.dependsOn = Arrays.asList(dependsOn);
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.kaka.notice;
+
+/**
+ * 被丢弃或拒绝的异步消息的处理回调
+ *
+ * @author zkpursuit
+ */
+public interface RejectedMessageHandler {
+
+    /**
+     * 消息被丢弃或拒绝，此方法在丢弃或拒绝消息的线程中执行
+     * <br>
+     * 池化的消息在此方法返回后即被释放，如需继续持有必须调用{@link Message#retain()}
+     *
+     * @param facade 拒绝消息的{@link Facade}
+     * @param msg    被丢弃或拒绝的消息
+     * @param policy 生效的处理策略
+     */
+    void rejected(Facade facade, Message msg, OverflowPolicy policy);
+
+}
@@ -0,0 +1,287 @@
+package com.kaka.notice;
+
+import com.kaka.util.MathUtils;
+import com.kaka.util.concurrent.WaitStrategy;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 基于预分配环形缓冲区的异步消息派发器
+ * <br>
+ * 取代{@link java.util.concurrent.Executor}作为{@link Facade}的异步派发通道：
+ * 生产者（比如网络线程）将消息写入预先分配的槽位，多个消费者线程竞争读取槽位并在本线程中同步处理消息，
+ * 派发过程中不创建任务对象，也不经过锁。
+ * <br>
+ * 缓冲区满时生产者按等待策略等待，缓冲区空时消费者按等待策略等待。
+ * 同一派发器可被多个{@link Facade}共享。
+ *
+ * @author zkpursuit
+ */
+public class RingBufferDispatcher {
+
+    private static final Logger logger = Logger.getLogger(RingBufferDispatcher.class.getTypeName());
+
+    /**
+     * 槽位
+     */
+    private static final class Slot {
+        volatile long sequence;
+        Facade facade;
+        RouteTable.Route route;
+        Message msg;
+        Runnable task;
+    }
+
+    /**
+     * 避免伪共享的序号
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedAtomicLong extends AtomicLong {
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        PaddedAtomicLong(long initialValue) {
+            super(initialValue);
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final PaddedAtomicLong tail = new PaddedAtomicLong(0);
+    private final PaddedAtomicLong head = new PaddedAtomicLong(0);
+    private final WaitStrategy waitStrategy;
+    private final Thread[] consumers;
+    private volatile boolean running;
+
+    /**
+     * 构造方法
+     *
+     * @param bufferSize    缓冲区槽位数量，将被调整为2的幂
+     * @param consumers     消费者线程数量
+     * @param waitStrategy  等待策略
+     * @param threadFactory 消费者线程工厂，为null时使用默认的守护线程
+     */
+    public RingBufferDispatcher(int bufferSize, int consumers, WaitStrategy waitStrategy, ThreadFactory threadFactory) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be > 0: " + bufferSize);
+        }
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("consumers must be > 0: " + consumers);
+        }
+        int size = MathUtils.nextPowerOfTwo(bufferSize);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            Slot slot = new Slot();
+            slot.sequence = i;
+            this.slots[i] = slot;
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy == null ? WaitStrategy.PARK : waitStrategy;
+        if (threadFactory == null) {
+            final AtomicInteger counter = new AtomicInteger(0);
+            threadFactory = (Runnable r) -> {
+                Thread thread = new Thread(r, "kaka-ring-dispatcher-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        this.consumers = new Thread[consumers];
+        for (int i = 0; i < consumers; i++) {
+            this.consumers[i] = threadFactory.newThread(this::consume);
+        }
+    }
+
+    /**
+     * 构造方法，消费者为默认的守护线程
+     *
+     * @param bufferSize   缓冲区槽位数量，将被调整为2的幂
+     * @param consumers    消费者线程数量
+     * @param waitStrategy 等待策略
+     */
+    public RingBufferDispatcher(int bufferSize, int consumers, WaitStrategy waitStrategy) {
+        this(bufferSize, consumers, waitStrategy, null);
+    }
+
+    /**
+     * 启动所有消费者线程
+     *
+     * @return 派发器本身
+     */
+    public synchronized RingBufferDispatcher start() {
+        if (!running) {
+            running = true;
+            for (Thread consumer : consumers) {
+                consumer.start();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 停止派发器，缓冲区中已写入的消息仍将被处理完毕，之后写入的消息将被拒绝
+     * <br>
+     * 停止前已占用槽位但停止后才写入的消息在生产者线程中直接处理；因缓冲区满而等待的生产者不再等待，其消息被拒绝。
+     */
+    public void shutdown() {
+        running = false;
+    }
+
+    /**
+     * 等待所有消费者线程结束
+     *
+     * @param millis 最大等待时间，单位毫秒
+     * @throws InterruptedException 等待被中断
+     */
+    public void awaitTermination(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        for (Thread consumer : consumers) {
+            long remain = deadline - System.currentTimeMillis();
+            if (remain <= 0) {
+                return;
+            }
+            consumer.join(remain);
+        }
+    }
+
+    /**
+     * 是否正在运行
+     *
+     * @return true运行中
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 缓冲区中尚未被处理的消息数量
+     *
+     * @return 消息数量
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return size < 0 ? 0 : (int) size;
+    }
+
+    /**
+     * 写入消息，缓冲区满时按等待策略等待
+     *
+     * @param facade 消息所属的{@link Facade}
+     * @param route  事件路由
+     * @param msg    待处理的消息
+     */
+    void publish(Facade facade, RouteTable.Route route, Message msg) {
+        publish(facade, route, msg, null);
+    }
+
+    /**
+     * 写入任务，缓冲区满时按等待策略等待
+     *
+     * @param task 由消费者线程直接执行的任务，任务自行负责消息的处理及释放
+     */
+    void publish(Runnable task) {
+        publish(null, null, null, task);
+    }
+
+    private void publish(Facade facade, RouteTable.Route route, Message msg, Runnable task) {
+        if (!running) {
+            throw new RejectedExecutionException("RingBufferDispatcher未启动或已停止");
+        }
+        final Slot[] slots = this.slots;
+        final int mask = this.mask;
+        int counter = 0;
+        long pos;
+        Slot slot;
+        for (;;) {
+            pos = tail.get();
+            slot = slots[(int) pos & mask];
+            long dif = slot.sequence - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (dif < 0) {
+                if (!running) {
+                    throw new RejectedExecutionException("RingBufferDispatcher已停止");
+                }
+                counter = waitStrategy.idle(counter);
+            }
+        }
+        if (!running) {
+            //占用槽位后派发器已停止，消费者可能已退出：发布空槽位以保持序号连续，消息在当前线程中处理
+            slot.sequence = pos + 1;
+            execute(facade, route, msg, task);
+            return;
+        }
+        slot.facade = facade;
+        slot.route = route;
+        slot.msg = msg;
+        slot.task = task;
+        slot.sequence = pos + 1;
+    }
+
+    /**
+     * 处理槽位中的消息或任务
+     *
+     * @param facade 消息所属的{@link Facade}
+     * @param route  事件路由
+     * @param msg    待处理的消息
+     * @param task   任务
+     */
+    private static void execute(Facade facade, RouteTable.Route route, Message msg, Runnable task) {
+        if (task != null) {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                logger.log(Level.SEVERE, ex.getMessage(), ex);
+            }
+        } else if (msg != null) {
+            try {
+                facade.dispatch(route, msg);
+            } catch (Throwable ex) {
+                logger.log(Level.SEVERE, ex.getMessage(), ex);
+            } finally {
+                msg.release();
+            }
+        }
+    }
+
+    /**
+     * 消费者线程循环
+     */
+    private void consume() {
+        final Slot[] slots = this.slots;
+        final int mask = this.mask;
+        int counter = 0;
+        for (;;) {
+            long pos = head.get();
+            Slot slot = slots[(int) pos & mask];
+            long dif = slot.sequence - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    Facade facade = slot.facade;
+                    RouteTable.Route route = slot.route;
+                    Message msg = slot.msg;
+                    Runnable task = slot.task;
+                    slot.facade = null;
+                    slot.route = null;
+                    slot.msg = null;
+                    slot.task = null;
+                    slot.sequence = pos + mask + 1;
+                    execute(facade, route, msg, task);
+                    counter = 0;
+                }
+            } else if (dif < 0) {
+                //停止后仍须处理完已占用的槽位，直至最终的写入位置
+                if (!running && head.get() == tail.get()) {
+                    return;
+                }
+                counter = waitStrategy.idle(counter);
+            }
+        }
+    }
+
+}
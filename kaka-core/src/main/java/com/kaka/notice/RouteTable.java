@@ -0,0 +1,254 @@
+package com.kaka.notice;
+
+import com.kaka.util.IntMap;
+import com.kaka.util.LongMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 事件路由表，注册时编译生成，派发时仅需一次查找即可获得事件对应的
+ * {@link com.kaka.notice.Command}对象池及所有{@link com.kaka.notice.Mediator}
+ * <br>
+ * int、short、long类型的事件号以原始类型为键存储，避免装箱对象的hashCode及equals调用；
+ * 其它类型（一般为String）的事件号以普通Map存储。
+ * <br>
+ * 读多写少，写操作（注册、移除）以写时复制的方式替换整张表及事件观察者数组，
+ * 读操作无锁，派发时遍历的事件观察者数组为不可变快照。
+ * <br> 此类在类包外不可访问
+ *
+ * @author zkpursuit
+ */
+final class RouteTable {
+
+    /**
+     * 单个事件的路由信息，不可变对象，变更时整体替换
+     */
+    static final class Route {
+        /**
+         * 事件号
+         */
+        final Object cmd;
+        /**
+         * 事件对应的{@link com.kaka.notice.Command}对象池，可为null
+         */
+        final CommandPool pool;
+        /**
+         * 对事件感兴趣的{@link com.kaka.notice.Mediator}，不为null
+         */
+        final Mediator[] mediators;
+        /**
+         * 事件的消息合并缓冲区，未开启合并时为null
+         */
+        final CoalescingBuffer coalescing;
+        /**
+         * 远程事件的消息转发器，不为null时消息不在本地处理
+         */
+        final MessageForwarder remote;
+
+        Route(Object cmd, CommandPool pool, Mediator[] mediators, CoalescingBuffer coalescing, MessageForwarder remote) {
+            this.cmd = cmd;
+            this.pool = pool;
+            this.mediators = mediators;
+            this.coalescing = coalescing;
+            this.remote = remote;
+        }
+    }
+
+    static final Mediator[] EMPTY_MEDIATORS = new Mediator[0];
+
+    private volatile IntMap<Route> intRoutes = new IntMap<>();
+    private volatile IntMap<Route> shortRoutes = new IntMap<>();
+    private volatile LongMap<Route> longRoutes = new LongMap<>();
+    private volatile Map<Object, Route> objRoutes = new HashMap<>();
+    private final Map<Object, CoalescingBuffer> coalescings = new HashMap<>();
+    private final Map<Object, MessageForwarder> remotes = new HashMap<>();
+
+    /**
+     * 获取事件路由
+     *
+     * @param cmd 事件号
+     * @return 事件路由，无任何处理器时返回null
+     */
+    Route get(Object cmd) {
+        if (cmd instanceof Integer) {
+            return intRoutes.get((Integer) cmd);
+        }
+        if (cmd instanceof Short) {
+            return shortRoutes.get((Short) cmd);
+        }
+        if (cmd instanceof Long) {
+            return longRoutes.get((Long) cmd);
+        }
+        if (cmd == null) {
+            return null;
+        }
+        return objRoutes.get(cmd);
+    }
+
+    /**
+     * 设置事件对应的{@link com.kaka.notice.Command}对象池
+     *
+     * @param cmd  事件号
+     * @param pool 对象池，为null表示移除
+     */
+    synchronized void setPool(Object cmd, CommandPool pool) {
+        Route route = get(cmd);
+        put(cmd, pool, route == null ? null : route.mediators);
+    }
+
+    /**
+     * 添加对事件感兴趣的{@link com.kaka.notice.Mediator}，以新数组替换原数组
+     *
+     * @param cmd      事件号
+     * @param mediator 事件观察者
+     */
+    synchronized void addMediator(Object cmd, Mediator mediator) {
+        Route route = get(cmd);
+        Mediator[] olds = route == null ? EMPTY_MEDIATORS : route.mediators;
+        Mediator[] mediators = Arrays.copyOf(olds, olds.length + 1);
+        mediators[olds.length] = mediator;
+        put(cmd, route == null ? null : route.pool, mediators);
+    }
+
+    /**
+     * 移除对事件感兴趣的{@link com.kaka.notice.Mediator}，以新数组替换原数组
+     *
+     * @param cmd      事件号
+     * @param mediator 事件观察者
+     * @return true 移除成功
+     */
+    synchronized boolean removeMediator(Object cmd, Mediator mediator) {
+        Route route = get(cmd);
+        if (route == null) {
+            return false;
+        }
+        Mediator[] olds = route.mediators;
+        for (int i = 0; i < olds.length; i++) {
+            if (olds[i] == mediator) {
+                Mediator[] mediators = new Mediator[olds.length - 1];
+                System.arraycopy(olds, 0, mediators, 0, i);
+                System.arraycopy(olds, i + 1, mediators, i, olds.length - i - 1);
+                put(cmd, route.pool, mediators);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 设置事件的消息合并缓冲区，事件尚无处理器时在注册处理器后生效
+     *
+     * @param cmd        事件号
+     * @param coalescing 消息合并缓冲区，为null表示取消合并
+     * @return 被替换的消息合并缓冲区
+     */
+    synchronized CoalescingBuffer setCoalescing(Object cmd, CoalescingBuffer coalescing) {
+        CoalescingBuffer prev = coalescing == null ? coalescings.remove(cmd) : coalescings.put(cmd, coalescing);
+        Route route = get(cmd);
+        if (route != null) {
+            put(cmd, route.pool, route.mediators);
+        }
+        return prev;
+    }
+
+    /**
+     * 设置远程事件的消息转发器，远程事件即使没有本地处理器也存在路由
+     *
+     * @param cmd       事件号
+     * @param forwarder 消息转发器，为null表示恢复为本地事件
+     * @return 被替换的消息转发器
+     */
+    synchronized MessageForwarder setRemote(Object cmd, MessageForwarder forwarder) {
+        MessageForwarder prev = forwarder == null ? remotes.remove(cmd) : remotes.put(cmd, forwarder);
+        Route route = get(cmd);
+        put(cmd, route == null ? null : route.pool, route == null ? null : route.mediators);
+        return prev;
+    }
+
+    /**
+     * 所有事件的消息合并缓冲区
+     *
+     * @return 快照
+     */
+    synchronized List<CoalescingBuffer> coalescings() {
+        return new ArrayList<>(coalescings.values());
+    }
+
+    /**
+     * 事件的消息合并缓冲区
+     *
+     * @param cmd 事件号
+     * @return 消息合并缓冲区，未开启合并时返回null
+     */
+    synchronized CoalescingBuffer getCoalescing(Object cmd) {
+        return coalescings.get(cmd);
+    }
+
+    /**
+     * 设置事件路由，pool为null、mediators为空且非远程事件时移除此事件的路由
+     *
+     * @param cmd       事件号
+     * @param pool      事件对应的{@link com.kaka.notice.Command}对象池
+     * @param mediators 对事件感兴趣的{@link com.kaka.notice.Mediator}
+     */
+    private void put(Object cmd, CommandPool pool, Mediator[] mediators) {
+        if (mediators == null) {
+            mediators = EMPTY_MEDIATORS;
+        }
+        Route route = null;
+        MessageForwarder remote = remotes.get(cmd);
+        if (pool != null || mediators.length > 0 || remote != null) {
+            route = new Route(cmd, pool, mediators, coalescings.get(cmd), remote);
+        }
+        if (cmd instanceof Integer) {
+            IntMap<Route> map = new IntMap<>(intRoutes);
+            if (route == null) {
+                map.remove((Integer) cmd);
+            } else {
+                map.put((Integer) cmd, route);
+            }
+            intRoutes = map;
+        } else if (cmd instanceof Short) {
+            IntMap<Route> map = new IntMap<>(shortRoutes);
+            if (route == null) {
+                map.remove((Short) cmd);
+            } else {
+                map.put((Short) cmd, route);
+            }
+            shortRoutes = map;
+        } else if (cmd instanceof Long) {
+            LongMap<Route> map = new LongMap<>(longRoutes);
+            if (route == null) {
+                map.remove((Long) cmd);
+            } else {
+                map.put((Long) cmd, route);
+            }
+            longRoutes = map;
+        } else {
+            Map<Object, Route> map = new HashMap<>(objRoutes);
+            if (route == null) {
+                map.remove(cmd);
+            } else {
+                map.put(cmd, route);
+            }
+            objRoutes = map;
+        }
+    }
+
+    /**
+     * 清除所有路由
+     */
+    synchronized void clear() {
+        intRoutes = new IntMap<>();
+        shortRoutes = new IntMap<>();
+        longRoutes = new LongMap<>();
+        objRoutes = new HashMap<>();
+        coalescings.clear();
+        remotes.clear();
+    }
+
+}
@@ -0,0 +1,428 @@
+package com.kaka.notice;
+
+import com.kaka.util.CronExpression;
+import com.kaka.util.MappedFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 定时调度日志，持久化标记为{@link Scheduler#durable()}的调度器
+ * <br>
+ * 调度的添加及取消以记录的形式追加写入内存映射文件，重启后通过{@link Facade#initScheduleJournal(ScheduleJournal)}
+ * 顺序读取一遍日志即可恢复所有未结束的调度；日志中失效的记录超过一半时将重写日志文件，只保留有效的调度。
+ * <br>
+ * 调度事件的消息号、消息体及分区键须可序列化；恢复后的调度从下一个执行时间点继续，停机期间错过的执行不会补发。
+ *
+ * @author zkpursuit
+ */
+public final class ScheduleJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ScheduleJournal.class.getTypeName());
+
+    private static final byte ADD = 1;
+    private static final byte CANCEL = 2;
+    private static final byte CANCEL_GROUP = 3;
+
+    private final File file;
+    private final int initialSize;
+    private final boolean force;
+    /**
+     * 重写后无法重新打开日志文件时为null，此后不再写入日志
+     */
+    private MappedFile mappedFile;
+    /**
+     * 有效的调度记录，组名 -> 消息号 -> 记录数据
+     */
+    private final Map<String, Map<Object, byte[]>> live = new LinkedHashMap<>();
+    private long liveBytes;
+
+    /**
+     * 构造方法
+     *
+     * @param file        日志文件，不存在时自动创建
+     * @param initialSize 日志文件初始大小，同时也是触发重写的最小文件大小
+     * @param force       每次写入后是否强制刷盘，为false时仅保证进程崩溃不丢失数据
+     * @throws IOException 文件读写异常
+     */
+    public ScheduleJournal(File file, int initialSize, boolean force) throws IOException {
+        this.file = file;
+        this.initialSize = initialSize;
+        this.force = force;
+        this.mappedFile = new MappedFile(file, initialSize, true);
+        this.mappedFile.scan(this::replay);
+    }
+
+    /**
+     * 构造方法，初始大小1MB，写入后不强制刷盘
+     *
+     * @param file 日志文件，不存在时自动创建
+     * @throws IOException 文件读写异常
+     */
+    public ScheduleJournal(File file) throws IOException {
+        this(file, 1024 * 1024, false);
+    }
+
+    /**
+     * 读取日志时重建有效调度记录
+     *
+     * @param data 记录数据
+     */
+    private void replay(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte type = in.readByte();
+            String group = in.readUTF();
+            if (type == CANCEL_GROUP) {
+                removeGroup(group);
+                return;
+            }
+            Object cmd = readObject(in);
+            if (type == ADD) {
+                put(group, cmd, bytes);
+            } else {
+                remove(group, cmd);
+            }
+        } catch (IOException | ClassNotFoundException ex) {
+            logger.log(Level.SEVERE, String.format("定时调度日志%s中存在无法解析的记录", file), ex);
+        }
+    }
+
+    private void put(String group, Object cmd, byte[] record) {
+        byte[] prev = live.computeIfAbsent(group, g -> new LinkedHashMap<>()).put(cmd, record);
+        if (prev != null) {
+            liveBytes -= prev.length;
+        }
+        liveBytes += record.length;
+    }
+
+    private boolean remove(String group, Object cmd) {
+        Map<Object, byte[]> records = live.get(group);
+        if (records == null) {
+            return false;
+        }
+        byte[] prev = records.remove(cmd);
+        if (records.isEmpty()) {
+            live.remove(group);
+        }
+        if (prev == null) {
+            return false;
+        }
+        liveBytes -= prev.length;
+        return true;
+    }
+
+    private boolean removeGroup(String group) {
+        Map<Object, byte[]> records = live.remove(group);
+        if (records == null) {
+            return false;
+        }
+        for (byte[] record : records.values()) {
+            liveBytes -= record.length;
+        }
+        return true;
+    }
+
+    private static void writeObject(DataOutputStream out, Object obj) throws IOException {
+        if (obj != null && !(obj instanceof Serializable)) {
+            throw new IOException(String.format("%s不可序列化", obj.getClass().getTypeName()));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(obj);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Object readObject(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+
+    /**
+     * 记录添加调度
+     *
+     * @param scheduler 已启动的调度器
+     */
+    synchronized void add(Scheduler scheduler) {
+        Message msg = scheduler.msg;
+        byte[] record;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ADD);
+            out.writeUTF(scheduler.name);
+            writeObject(out, msg.what);
+            out.writeLong(scheduler.startTime);
+            out.writeLong(scheduler.endTime);
+            out.writeLong(scheduler.interval);
+            out.writeInt(scheduler.repeatCount);
+            CronExpression cron = scheduler.cron;
+            out.writeBoolean(cron != null);
+            if (cron != null) {
+                out.writeUTF(cron.toString());
+                out.writeUTF(cron.getZone().getId());
+            }
+            writeObject(out, msg.body);
+            writeObject(out, msg.getPartitionKey());
+            out.flush();
+            record = bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new Error(String.format("持久化的定时调度事件%s须可序列化：%s", msg.what, ex.getMessage()));
+        }
+        put(scheduler.name, msg.what, record);
+        append(record);
+    }
+
+    /**
+     * 记录取消调度
+     *
+     * @param group 调度器组名
+     * @param cmd   事件名
+     */
+    synchronized void cancel(String group, Object cmd) {
+        if (!remove(group, cmd)) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CANCEL);
+            out.writeUTF(group);
+            writeObject(out, cmd);
+            out.flush();
+            append(bytes.toByteArray());
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 记录取消组内所有调度
+     *
+     * @param group 调度器组名
+     */
+    synchronized void cancelGroup(String group) {
+        if (!removeGroup(group)) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CANCEL_GROUP);
+            out.writeUTF(group);
+            out.flush();
+            append(bytes.toByteArray());
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    private void append(byte[] record) {
+        if (mappedFile == null) {
+            logger.log(Level.WARNING, String.format("定时调度日志%s已失效，跳过写入", file));
+            return;
+        }
+        try {
+            int position = mappedFile.position();
+            if (position >= initialSize && liveBytes * 2 < position) {
+                compact();
+            }
+            MappedFile mapped = this.mappedFile;
+            if (mapped == null) {
+                return;
+            }
+            mapped.append(record);
+            if (force) {
+                mapped.force();
+            }
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, String.format("写入定时调度日志%s失败", file), ex);
+        }
+    }
+
+    /**
+     * 重写日志文件，仅保留有效的调度记录
+     * <br>
+     * 替换后无法重新打开日志文件时日志失效，此后的添加及取消调度仅记录日志而不再写入
+     *
+     * @throws IOException 文件读写异常，或日志已失效
+     */
+    public synchronized void compact() throws IOException {
+        if (mappedFile == null) {
+            throw new IOException(String.format("定时调度日志%s已失效", file));
+        }
+        File tmp = new File(file.getPath() + ".compact");
+        Files.deleteIfExists(tmp.toPath());
+        long size = Math.max(initialSize, liveBytes * 2 + 4);
+        try (MappedFile compacted = new MappedFile(tmp, (int) Math.min(Integer.MAX_VALUE, size), true)) {
+            for (Map<Object, byte[]> records : live.values()) {
+                for (byte[] record : records.values()) {
+                    compacted.append(record);
+                }
+            }
+            compacted.force();
+        }
+        //关闭时解除映射，否则部分平台上无法替换仍被映射的文件
+        MappedFile closed = mappedFile;
+        mappedFile = null;
+        closed.close();
+        IOException moveError = null;
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            moveError = ex;
+        }
+        //替换失败时重新映射原文件，日志仍可继续写入
+        MappedFile reopened;
+        try {
+            reopened = new MappedFile(file, initialSize, true);
+        } catch (IOException ex) {
+            if (moveError != null) {
+                ex.addSuppressed(moveError);
+            }
+            logger.log(Level.SEVERE, String.format("定时调度日志%s无法重新打开，此后不再写入", file), ex);
+            throw ex;
+        }
+        mappedFile = reopened;
+        if (moveError != null) {
+            throw moveError;
+        }
+    }
+
+    /**
+     * 恢复日志中所有未结束的调度
+     *
+     * @param facade 调度所属的{@link Facade}
+     * @return 恢复的调度数量
+     */
+    int restore(Facade facade) {
+        List<byte[]> records = new ArrayList<>();
+        synchronized (this) {
+            live.values().forEach(map -> records.addAll(map.values()));
+        }
+        int count = 0;
+        long now = System.currentTimeMillis();
+        for (byte[] record : records) {
+            String group = null;
+            Object cmd = null;
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+                in.readByte();
+                group = in.readUTF();
+                cmd = readObject(in);
+                long startTime = in.readLong();
+                long endTime = in.readLong();
+                long interval = in.readLong();
+                int repeatCount = in.readInt();
+                CronExpression cron = null;
+                if (in.readBoolean()) {
+                    String expression = in.readUTF();
+                    cron = new CronExpression(expression, ZoneId.of(in.readUTF()));
+                }
+                Object body = readObject(in);
+                Object partitionKey = readObject(in);
+                Scheduler scheduler = restore(group, startTime, endTime, interval, repeatCount, cron, now);
+                if (scheduler == null) {
+                    cancel(group, cmd);
+                    continue;
+                }
+                Message msg = new Message(cmd, body);
+                msg.setPartitionKey(partitionKey);
+                scheduler.restored = true;
+                facade.sendMessage(msg, scheduler);
+                count++;
+            } catch (IOException | ClassNotFoundException | RuntimeException ex) {
+                logger.log(Level.SEVERE, String.format("恢复定时调度%s:%s失败", group, cmd), ex);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 根据持久化的调度参数及当前时间重建调度器，跳过停机期间错过的执行
+     *
+     * @return 调度器，调度已结束时返回null
+     */
+    private static Scheduler restore(String group, long startTime, long endTime, long interval, int repeatCount, CronExpression cron, long now) {
+        if (endTime < now) {
+            return null;
+        }
+        Scheduler scheduler = Scheduler.create(group).durable();
+        scheduler.endTime = endTime;
+        scheduler.interval = interval;
+        scheduler.cron = cron;
+        int fired = 0;
+        if (startTime <= now) {
+            if (cron != null) {
+                if (repeatCount > 0) {
+                    long next = cron.next(startTime - 1);
+                    while (next >= 0 && next <= now && fired < repeatCount) {
+                        fired++;
+                        next = cron.next(next);
+                    }
+                }
+                startTime = now;
+            } else {
+                long delay = interval <= 0 ? 1 : interval;
+                long elapsed = (now - startTime) / delay + 1;
+                fired = (int) Math.min(Integer.MAX_VALUE, elapsed);
+                startTime += elapsed * delay;
+            }
+        }
+        if (repeatCount > 0 || cron == null) {
+            int remain = (repeatCount > 0 ? repeatCount : 1) - fired;
+            if (remain <= 0) {
+                return null;
+            }
+            scheduler.repeatCount = remain;
+        }
+        scheduler.startTime = startTime;
+        return scheduler;
+    }
+
+    /**
+     * 日志中有效的调度数量
+     *
+     * @return 调度数量
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Map<Object, byte[]> records : live.values()) {
+            size += records.size();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mappedFile != null) {
+            mappedFile.close();
+        }
+    }
+
+}
@@ -1,5 +1,10 @@
 package com.kaka.notice;
 
+import com.kaka.util.CronExpression;
+import com.kaka.util.concurrent.TimingWheel;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -20,6 +25,15 @@ public class Scheduler implements Runnable {
     AtomicInteger count;
     AtomicLong prevExecTime; //执行次数尽可能的不受执行耗时影响
     String name;
+    long delay;
+    CronExpression cron;
+    boolean durable;
+    boolean restored;
+    volatile boolean cancelled;
+    private volatile TimingWheel wheel;
+    private volatile ScheduledExecutorService schedulePool;
+    private volatile TimingWheel.Timeout timeout;
+    private volatile ScheduledFuture<?> future;
 
     /**
      * 私有构造方法，外部不允许实例化
@@ -27,7 +41,7 @@ public class Scheduler implements Runnable {
     private Scheduler() {
         this.count = new AtomicInteger(0);
         this.prevExecTime = new AtomicLong(0);
-        this.repeatCount = 1;
+        this.repeatCount = 0;
         this.name = "";
         this.endTime = Long.MAX_VALUE;
     }
@@ -40,7 +54,7 @@ public class Scheduler implements Runnable {
      */
     public static Scheduler create(String group) {
         Scheduler scheduler = new Scheduler();
-        scheduler.name = group;
+        scheduler.name = group == null ? "" : group;
         return scheduler;
     }
 
@@ -89,6 +103,39 @@ public class Scheduler implements Runnable {
         return this;
     }
 
+    /**
+     * 按cron表达式调度，设置后执行间隔无效；未设置最大执行次数时不限制执行次数
+     *
+     * @param expression cron表达式，语法与Quartz一致，比如"0 0 12 * * ?"表示每天12点
+     * @return 调度器
+     */
+    public Scheduler cron(String expression) {
+        return cron(new CronExpression(expression));
+    }
+
+    /**
+     * 按cron表达式调度，设置后执行间隔无效；未设置最大执行次数时不限制执行次数
+     *
+     * @param cron 预编译的cron表达式，可被多个调度器共享
+     * @return 调度器
+     */
+    public Scheduler cron(CronExpression cron) {
+        this.cron = cron;
+        return this;
+    }
+
+    /**
+     * 持久化此调度，{@link Facade}初始化{@link ScheduleJournal}后有效，重启后可自动恢复
+     * <br>
+     * 调度事件的消息号、消息体及分区键须可序列化
+     *
+     * @return 调度器
+     */
+    public Scheduler durable() {
+        this.durable = true;
+        return this;
+    }
+
     /**
      * 调度器执行间隔时间
      *
@@ -100,34 +147,138 @@ public class Scheduler implements Runnable {
         if (interval <= 0) {
             this.interval = 0;
         } else {
-            this.interval = unit.convert(interval, TimeUnit.MILLISECONDS);
+            this.interval = TimeUnit.MILLISECONDS.convert(interval, unit);
         }
         return this;
     }
 
+    /**
+     * 启动调度，优先由时间轮驱动
+     *
+     * @param wheel        时间轮，为null时由定时调度线程池驱动
+     * @param schedulePool 定时调度线程池
+     * @param initDelay    首次执行的延迟毫秒数，按cron表达式调度时无效
+     */
+    void start(TimingWheel wheel, ScheduledExecutorService schedulePool, long initDelay) {
+        this.wheel = wheel;
+        this.schedulePool = schedulePool;
+        if (cron != null) {
+            long now = System.currentTimeMillis();
+            long first = cron.next(Math.max(startTime, now) - 1);
+            if (first < 0 || first > endTime) {
+                facade.cancelSchedule(this);
+                return;
+            }
+            prevExecTime.set(first);
+            initDelay = first - now;
+        }
+        if (wheel != null) {
+            this.timeout = wheel.newTimeout(this, initDelay, TimeUnit.MILLISECONDS);
+        } else if (cron != null) {
+            this.future = schedulePool.schedule(this, initDelay, TimeUnit.MILLISECONDS);
+        } else {
+            this.future = schedulePool.scheduleWithFixedDelay(this, initDelay, delay, TimeUnit.MILLISECONDS);
+        }
+        if (cancelled) {
+            cancelHandle();
+        }
+    }
+
+    /**
+     * 单次触发的调度（时间轮或cron）执行完毕后重新加入
+     *
+     * @param delay 延迟毫秒数
+     */
+    private void rearm(long delay) {
+        if (cancelled) {
+            return;
+        }
+        TimingWheel wheel = this.wheel;
+        if (wheel != null) {
+            this.timeout = wheel.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+        } else {
+            this.future = schedulePool.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+        if (cancelled) {
+            cancelHandle();
+        }
+    }
+
+    /**
+     * 停止调度，已停止的调度器不可再次启动
+     * <br>
+     * 首次停止时释放调度器持有的消息引用（即调用方交给调度器的引用），池化的消息在最后一次派发处理完成后放回消息池；
+     * 与{@link #run()}中的retain互斥，避免消息被释放后再被引用。
+     */
+    void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        cancelHandle();
+        Message msg = this.msg;
+        if (msg != null) {
+            msg.release();
+        }
+    }
+
+    private void cancelHandle() {
+        TimingWheel.Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        ScheduledFuture<?> future = this.future;
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
     /**
      * 调度器正式执行
      */
     @Override
     final public void run() {
+        if (cancelled) {
+            return;
+        }
         if (this.startTime > this.endTime) {
-            facade.cancelSchedule(name);
+            facade.cancelSchedule(this);
             return;
         }
         // System.out.println(this.endTime - this.prevExecTime.get());
-        long last = this.prevExecTime.addAndGet(this.interval);
+        long last = cron == null ? this.prevExecTime.addAndGet(this.interval) : this.prevExecTime.get();
+        //池化的消息每次派发后都会被释放一次，调度器持有的引用在停止调度时释放
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            msg.retain();
+        }
         try {
             facade.sendMessage(msg, false);
         } catch (Exception ex) {
-            facade.cancelSchedule(name);
+            facade.cancelSchedule(this);
         }
         int c = this.count.addAndGet(1);
-        if (c >= this.repeatCount) {
-            facade.cancelSchedule(name);
-        } else {
-            if (last > this.endTime) {
-                facade.cancelSchedule(name);
+        int limit = this.repeatCount > 0 ? this.repeatCount : (cron == null ? 1 : Integer.MAX_VALUE);
+        if (c >= limit) {
+            facade.cancelSchedule(this);
+        } else if (cron != null) {
+            long now = System.currentTimeMillis();
+            long next = cron.next(Math.max(now, last));
+            if (next < 0 || next > this.endTime) {
+                facade.cancelSchedule(this);
+            } else {
+                this.prevExecTime.set(next);
+                rearm(next - now);
             }
+        } else if (last > this.endTime) {
+            facade.cancelSchedule(this);
+        } else if (this.wheel != null) {
+            //时间轮中的任务仅执行一次，执行完毕后按间隔重新加入，与scheduleWithFixedDelay语义一致
+            rearm(delay);
         }
     }
 
@@ -1,5 +1,7 @@
 package com.kaka.notice.annotation;
 
+import com.kaka.notice.MessageCoalescer;
+
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Repeatable;
@@ -39,6 +41,13 @@ public @interface Handler {
      */
     int pooledSize() default -1;
 
+    /**
+     * 是否为无状态的{@link com.kaka.notice.Command}，参见{@link com.kaka.notice.Facade#registerStatelessCommand(Object, Class)}
+     *
+     * @return true时仅创建一个实例并发处理所有消息，忽略{@link #pooledSize()}
+     */
+    boolean stateless() default false;
+
     /**
      * 被注册到的目标{@link com.kaka.notice.Facade}唯一名
      *
@@ -46,4 +55,18 @@ public @interface Handler {
      */
     String context() default "";
 
+    /**
+     * 消息合并窗口毫秒数，参见{@link com.kaka.notice.Facade#setCoalescing(Object, long, java.util.concurrent.TimeUnit, com.kaka.notice.MessageCoalescer)}
+     *
+     * @return 小于0不合并，等于0时仅在调用{@link com.kaka.notice.Facade#flushCoalesced()}时派发
+     */
+    long coalesceWindow() default -1;
+
+    /**
+     * 消息合并器，须有无参构造方法，仅在{@link #coalesceWindow()}不小于0时有效
+     *
+     * @return 消息合并器类型，默认后到的消息替换之前的消息
+     */
+    Class<? extends MessageCoalescer> coalescer() default MessageCoalescer.class;
+
 }
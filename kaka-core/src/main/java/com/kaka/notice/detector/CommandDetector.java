@@ -3,9 +3,12 @@ package com.kaka.notice.detector;
 import com.kaka.notice.Command;
 import com.kaka.notice.Facade;
 import com.kaka.notice.FacadeFactory;
+import com.kaka.notice.MessageCoalescer;
 import com.kaka.notice.annotation.Handler;
+import com.kaka.util.ReflectUtils;
 import com.kaka.util.StringUtils;
 
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,6 +26,16 @@ public class CommandDetector implements IDetector {
         return "command";
     }
 
+    /**
+     * 仅注册命令执行器的类，不依赖其它识别器
+     *
+     * @return 空数组
+     */
+    @Override
+    public String[] dependsOn() {
+        return new String[0];
+    }
+
     /**
      * 识别业务处理器相关的类并注册到{@link com.kaka.notice.Facade}
      *
@@ -52,23 +65,39 @@ public class CommandDetector implements IDetector {
                     String cmdStr = String.valueOf(cmd);
                     if (StringUtils.isNumeric(cmdStr)) {
                         if (cmdCls == short.class || cmdCls == Short.class) {
-                            cotx.registerCommand(Short.parseShort(cmdStr), (Class<Command>) cls, regist.pooledSize());
+                            cmd = Short.parseShort(cmdStr);
                         } else if (cmdCls == int.class || cmdCls == Integer.class) {
-                            cotx.registerCommand(Integer.parseInt(cmdStr), (Class<Command>) cls, regist.pooledSize());
+                            cmd = Integer.parseInt(cmdStr);
                         } else if (cmdCls == long.class || cmdCls == Long.class) {
-                            cotx.registerCommand(Long.parseLong(cmdStr), (Class<Command>) cls, regist.pooledSize());
+                            cmd = Long.parseLong(cmdStr);
+                        } else {
+                            continue;
                         }
+                        register(cotx, cmd, (Class<Command>) cls, regist);
                     } else {
-                        cotx.registerCommand(cmd, (Class<Command>) cls, regist.pooledSize());
+                        register(cotx, cmd, (Class<Command>) cls, regist);
                         logger.log(Level.WARNING, "注解cmd数据类型与注解type参数描述的类型不一致，强制以cmd参数类型注册！{0}", new Object[]{cls});
                     }
                     logger.log(Level.INFO, "注册业务处理器：cmd（{0}）：{1}  ==>>>  {2}", new Object[]{cmdCls.getTypeName(), regist.cmd(), cls});
                 } else {
-                    cotx.registerCommand(cmd, (Class<Command>) cls, regist.pooledSize());
+                    register(cotx, cmd, (Class<Command>) cls, regist);
                     logger.log(Level.INFO, "注册业务处理器：cmd（{0}）：{1}  ==>>>  {2}", new Object[]{cmdCls.getTypeName(), regist.cmd(), cls});
                 }
+                if (regist.coalesceWindow() >= 0) {
+                    Class<? extends MessageCoalescer> coalescerCls = regist.coalescer();
+                    MessageCoalescer coalescer = coalescerCls == MessageCoalescer.class ? null : (MessageCoalescer) ReflectUtils.newInstance(coalescerCls);
+                    cotx.setCoalescing(cmd, regist.coalesceWindow(), TimeUnit.MILLISECONDS, coalescer);
+                }
             }
         }
         return true;
     }
+
+    private static void register(Facade facade, Object cmd, Class<Command> cls, Handler regist) {
+        if (regist.stateless()) {
+            facade.registerStatelessCommand(cmd, cls);
+        } else {
+            facade.registerCommand(cmd, cls, regist.pooledSize());
+        }
+    }
 }
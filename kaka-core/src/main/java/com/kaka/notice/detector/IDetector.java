@@ -21,4 +21,14 @@ public interface IDetector {
      * @return true表示被正确识别
      */
     boolean discern(Class<?> cls);
+
+    /**
+     * 依赖的识别器名称，{@link com.kaka.Startup}在依赖的识别器全部处理完成后才开始执行此识别器，
+     * 开启并行时无依赖关系的识别器可并行执行；依赖的识别器须先于此识别器添加，否则启动时抛出异常
+     *
+     * @return 依赖的识别器名称，为空数组表示无依赖；为null表示依赖所有先添加的识别器，即顺序执行
+     */
+    default String[] dependsOn() {
+        return null;
+    }
 }
@@ -21,6 +21,16 @@ public class MediatorDetector implements IDetector {
         return "mediator";
     }
 
+    /**
+     * 事件观察者注册时即创建实例并回调{@link Mediator#onRegister()}，可能用到数值配置、数据模型及命令执行器
+     *
+     * @return 依赖的识别器名称
+     */
+    @Override
+    public String[] dependsOn() {
+        return new String[]{"numeric", "model", "command"};
+    }
+
     /**
      * 识别事件观察者相关的类并注册到{@link com.kaka.notice.Facade}
      *
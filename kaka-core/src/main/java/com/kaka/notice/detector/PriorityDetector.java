@@ -1,10 +1,37 @@
 package com.kaka.notice.detector;
 
+import com.kaka.StartupReport;
+
 /**
  * @author zkpursuit
  */
 abstract public class PriorityDetector implements IDetector {
 
+    private volatile StartupReport report;
+
+    /**
+     * 设置启动耗时报告，集中处理时记录每个类的处理耗时
+     *
+     * @param report 启动耗时报告，为null时不记录
+     */
+    public void setReport(StartupReport report) {
+        this.report = report;
+    }
+
+    /**
+     * 记录类在集中处理中的耗时
+     *
+     * @param cls   类
+     * @param start 开始处理的时间点，{@link System#nanoTime()}
+     */
+    protected void record(Class<?> cls, long start) {
+        StartupReport _report = this.report;
+        if (_report != null) {
+            String name = name();
+            _report.process(name == null ? getClass().getTypeName() : name, cls, System.nanoTime() - start);
+        }
+    }
+
     protected static class Element {
         private final Object annotation;
         private final Class<?> clasz;
@@ -26,6 +26,16 @@ public class ProxyDetector extends PriorityDetector {
         return "model";
     }
 
+    /**
+     * 数据模型的注册可能依赖数值配置
+     *
+     * @return 依赖的识别器名称
+     */
+    @Override
+    public String[] dependsOn() {
+        return new String[]{"numeric"};
+    }
+
     /**
      * 识别业务模型相关的类并注册到{@link com.kaka.notice.Facade}
      *
@@ -63,6 +73,7 @@ public class ProxyDetector extends PriorityDetector {
             return 0;
         });
         list.forEach((element) -> {
+            long start = System.nanoTime();
             Model model = element.getAnnotation();
             Class<?> cls = element.getClasz();
             Facade cotx;
@@ -80,6 +91,7 @@ public class ProxyDetector extends PriorityDetector {
                 proxy = cotx.registerProxy((Class<? extends Proxy>) cls);
                 logger.log(Level.INFO, "注册业务数据模型：Proxy（{0}）==>>>  {1}", new Object[]{proxy.name, cls});
             }
+            record(cls, start);
         });
         list.clear();
     }
@@ -48,6 +48,9 @@ public class NumericDetector extends PriorityDetector {
         return true;
     }
 
+    /**
+     * 按优先级从高到低注册数值配置，相同优先级的数值配置互不依赖，并行解析注册
+     */
     @Override
     public void centralizeProcess() {
         if (list.isEmpty()) return;
@@ -62,17 +65,35 @@ public class NumericDetector extends PriorityDetector {
             }
             return 0;
         });
-        list.forEach((element) -> {
-            Class<?> cls = element.getClasz();
-            Numeric numeric = element.getAnnotation();
-            Facade cotx;
-            if (numeric.context().equals("")) {
-                cotx = FacadeFactory.getFacade();
+        int from = 0;
+        while (from < list.size()) {
+            int priority = list.get(from).<Numeric>getAnnotation().priority();
+            int to = from + 1;
+            while (to < list.size() && list.get(to).<Numeric>getAnnotation().priority() == priority) {
+                to++;
+            }
+            List<Element> group = list.subList(from, to);
+            if (group.size() == 1) {
+                register(group.get(0));
             } else {
-                cotx = FacadeFactory.getFacade(numeric.context());
+                group.parallelStream().forEach(this::register);
             }
-            cotx.registerProxy((Class<? extends Proxy>) cls, numeric.src());
-        });
+            from = to;
+        }
         list.clear();
     }
+
+    private void register(Element element) {
+        long start = System.nanoTime();
+        Class<?> cls = element.getClasz();
+        Numeric numeric = element.getAnnotation();
+        Facade cotx;
+        if (numeric.context().equals("")) {
+            cotx = FacadeFactory.getFacade();
+        } else {
+            cotx = FacadeFactory.getFacade(numeric.context());
+        }
+        cotx.registerProxy((Class<? extends Proxy>) cls, numeric.src());
+        record(cls, start);
+    }
 }
@@ -1,24 +1,88 @@
 package com.kaka.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * 类扫描工具
+ * <br>
+ * 除加载包下所有类外，亦可按注解预过滤：并行读取类文件的常量池，仅加载引用了指定注解描述符的类，
+ * 其它类不会被类加载器加载；jar包的过滤结果按jar路径、大小及修改时间缓存，
+ * 设置系统属性{@link #CACHE_PROPERTY}后缓存持久化到文件，重启后jar包未变化时不再读取其中的类文件。
  *
  * @author zkpursuit
  */
 public class ClassScaner {
 
+    private static final Logger logger = Logger.getLogger(ClassScaner.class.getTypeName());
+
+    /**
+     * jar包注解过滤结果的缓存文件路径的系统属性，未设置时缓存仅在进程内有效
+     */
+    public static final String CACHE_PROPERTY = "kaka.scan.cache";
+
+    /**
+     * 单个jar包中单个包的注解过滤结果
+     */
+    private static final class CachedJar {
+        final String path;
+        final long size;
+        final long lastModified;
+        final String scope;
+        final List<String> names;
+
+        CachedJar(String path, long size, long lastModified, String scope, List<String> names) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.scope = scope;
+            this.names = names;
+        }
+
+        String key() {
+            return path + '|' + size + '|' + lastModified + '|' + scope;
+        }
+    }
+
+    /**
+     * jar包的注解过滤结果缓存，键为jar路径、大小、修改时间、包路径及注解描述符
+     */
+    private static final Map<String, CachedJar> jarCache = new ConcurrentHashMap<>();
+    private static boolean cacheLoaded;
+    private static volatile boolean cacheDirty;
+
     /**
      * 获取包下的所有类
      *
@@ -32,6 +96,338 @@ public class ClassScaner {
         return classes;
     }
 
+    /**
+     * 获取包下所有带有指定注解的类，未引用任何指定注解的类不会被加载
+     * <br>
+     * 以类文件常量池中是否存在注解的类型描述符为判断依据，不解析注解属性，故而可能包含仅以其它方式引用了注解的类，
+     * 由调用方再以反射确认；类文件的读取及解析并行执行，类的加载仍按扫描顺序串行执行。
+     *
+     * @param loader      查询类的类加载器
+     * @param packageName 类包名
+     * @param annotations 注解类的二进制名称，如com.kaka.notice.annotation.Handler
+     * @return 包下带有指定注解的类
+     */
+    public static Set<Class<?>> getClasses(ClassLoader loader, String packageName, Collection<String> annotations) {
+        return getClasses(loader, packageName, annotations, Collections.emptySet());
+    }
+
+    /**
+     * 获取包下所有带有指定注解的类，跳过指定的类路径根，比如已提供类索引的目录或jar包
+     *
+     * @param loader      查询类的类加载器
+     * @param packageName 类包名
+     * @param annotations 注解类的二进制名称，如com.kaka.notice.annotation.Handler
+     * @param skipRoots   跳过的类路径根的URL，比如file:/app/classes/、jar:file:/app/lib/a.jar!/
+     * @return 包下带有指定注解的类
+     */
+    public static Set<Class<?>> getClasses(ClassLoader loader, String packageName, Collection<String> annotations, Collection<String> skipRoots) {
+        Set<String> sorted = new TreeSet<>(annotations);
+        byte[][] descriptors = new byte[sorted.size()][];
+        int i = 0;
+        for (String annotation : sorted) {
+            descriptors[i++] = ('L' + annotation.replace('.', '/') + ';').getBytes(StandardCharsets.UTF_8);
+        }
+        String packageDirName = packageName.replace('.', '/');
+        List<String> names = new ArrayList<>();
+        try {
+            Enumeration<URL> dirs = loader.getResources(packageDirName);
+            while (dirs.hasMoreElements()) {
+                URL url = dirs.nextElement();
+                if (!skipRoots.isEmpty() && skipRoots.contains(root(url, packageDirName))) {
+                    continue;
+                }
+                String protocol = url.getProtocol();
+                if ("file".equals(protocol)) {
+                    String filePath = URLDecoder.decode(url.getFile(), "UTF-8");
+                    List<Map.Entry<String, File>> files = new ArrayList<>();
+                    listClassFiles(packageName, new File(filePath), files);
+                    names.addAll(files.parallelStream()
+                            .filter(entry -> annotated(entry.getValue(), descriptors))
+                            .map(Map.Entry::getKey)
+                            .collect(Collectors.toList()));
+                } else if ("jar".equals(protocol)) {
+                    JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+                    names.addAll(filterJar(jar, packageDirName, sorted, descriptors));
+                }
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            throw new Error(ex);
+        }
+        if (cacheDirty) {
+            saveCache();
+        }
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (String name : names) {
+            try {
+                classes.add(loader.loadClass(name));
+            } catch (ClassNotFoundException | NoClassDefFoundError | ClassFormatError ex) {
+                throw new Error(ex);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 包路径所在的类路径根
+     *
+     * @param url            包路径的URL
+     * @param packageDirName 包路径
+     * @return 类路径根的URL
+     */
+    private static String root(URL url, String packageDirName) {
+        String str = url.toString();
+        if (str.endsWith("/")) {
+            str = str.substring(0, str.length() - 1);
+        }
+        return str.endsWith(packageDirName) ? str.substring(0, str.length() - packageDirName.length()) : str;
+    }
+
+    /**
+     * 清除jar包的注解过滤结果缓存，包括持久化的缓存文件
+     */
+    public static synchronized void clearCache() {
+        jarCache.clear();
+        cacheLoaded = true;
+        cacheDirty = false;
+        String path = System.getProperty(CACHE_PROPERTY);
+        if (path != null) {
+            try {
+                Files.deleteIfExists(Paths.get(path));
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, String.format("删除类扫描缓存%s失败", path), ex);
+            }
+        }
+    }
+
+    /**
+     * 首次过滤jar包前读取持久化的缓存，跳过jar包已变化或已不存在的记录
+     */
+    private static synchronized void loadCache() {
+        if (cacheLoaded) {
+            return;
+        }
+        cacheLoaded = true;
+        String path = System.getProperty(CACHE_PROPERTY);
+        if (path == null || !new File(path).isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String jarPath = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String scope = in.readUTF();
+                int n = in.readInt();
+                List<String> names = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) {
+                    names.add(in.readUTF());
+                }
+                File jar = new File(jarPath);
+                if (jar.length() == size && jar.lastModified() == lastModified) {
+                    CachedJar cached = new CachedJar(jarPath, size, lastModified, scope, Collections.unmodifiableList(names));
+                    jarCache.putIfAbsent(cached.key(), cached);
+                } else {
+                    cacheDirty = true;
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, String.format("读取类扫描缓存%s失败，将重新扫描", path), ex);
+        }
+    }
+
+    /**
+     * 持久化jar包的注解过滤结果，先写入临时文件再替换
+     */
+    private static synchronized void saveCache() {
+        String path = System.getProperty(CACHE_PROPERTY);
+        if (path == null || !cacheDirty) {
+            return;
+        }
+        cacheDirty = false;
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            List<CachedJar> entries = new ArrayList<>(jarCache.values());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(entries.size());
+                for (CachedJar cached : entries) {
+                    out.writeUTF(cached.path);
+                    out.writeLong(cached.size);
+                    out.writeLong(cached.lastModified);
+                    out.writeUTF(cached.scope);
+                    out.writeInt(cached.names.size());
+                    for (String name : cached.names) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, String.format("写入类扫描缓存%s失败", path), ex);
+        }
+    }
+
+    /**
+     * 过滤jar包中引用了指定注解的类
+     *
+     * @param jar            jar包
+     * @param packageDirName 包路径
+     * @param annotations    注解类名
+     * @param descriptors    注解描述符
+     * @return 类名
+     */
+    private static List<String> filterJar(JarFile jar, String packageDirName, Set<String> annotations, byte[][] descriptors) {
+        loadCache();
+        File file = new File(jar.getName());
+        String jarPath = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String scope = packageDirName + '|' + annotations;
+        CachedJar cached = jarCache.get(jarPath + '|' + size + '|' + lastModified + '|' + scope);
+        if (cached != null) {
+            return cached.names;
+        }
+        List<String> names;
+        List<JarEntry> entries = new ArrayList<>();
+        Enumeration<JarEntry> enumeration = jar.entries();
+        while (enumeration.hasMoreElements()) {
+            JarEntry entry = enumeration.nextElement();
+            String name = entry.getName();
+            if (name.charAt(0) == '/') {
+                name = name.substring(1);
+            }
+            if (name.startsWith(packageDirName) && name.endsWith(".class") && !entry.isDirectory() && name.lastIndexOf('/') != -1) {
+                entries.add(entry);
+            }
+        }
+        names = entries.parallelStream().filter(entry -> {
+            try (InputStream in = jar.getInputStream(entry)) {
+                return annotated(in, descriptors);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }).map(entry -> {
+            String name = entry.getName();
+            if (name.charAt(0) == '/') {
+                name = name.substring(1);
+            }
+            return name.substring(0, name.length() - 6).replace('/', '.');
+        }).collect(Collectors.toList());
+        cached = new CachedJar(jarPath, size, lastModified, scope, Collections.unmodifiableList(names));
+        jarCache.put(cached.key(), cached);
+        cacheDirty = true;
+        return cached.names;
+    }
+
+    /**
+     * 递归列出目录下的所有类文件
+     *
+     * @param packageName 包名
+     * @param dir         包名对应的目录
+     * @param files       类名及类文件
+     */
+    private static void listClassFiles(String packageName, File dir, List<Map.Entry<String, File>> files) {
+        File[] dirfiles = dir.listFiles((File file) -> file.isDirectory() || file.getName().endsWith(".class"));
+        if (dirfiles == null) {
+            return;
+        }
+        for (File file : dirfiles) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                listClassFiles(packageName + "." + name, file, files);
+            } else {
+                files.add(new AbstractMap.SimpleImmutableEntry<>(packageName + '.' + name.substring(0, name.length() - 6), file));
+            }
+        }
+    }
+
+    private static boolean annotated(File file, byte[][] descriptors) {
+        try (InputStream in = new FileInputStream(file)) {
+            return annotated(in, descriptors);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * 类文件的常量池中是否存在任一注解描述符，仅读取至常量池末尾
+     *
+     * @param in          类文件输入流
+     * @param descriptors 注解描述符
+     * @return true 存在；无法识别的类文件亦返回true，交由类加载器处理
+     * @throws IOException 读取异常
+     */
+    static boolean annotated(InputStream in, byte[][] descriptors) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 8192));
+        if (data.readInt() != 0xCAFEBABE) {
+            return true;
+        }
+        data.skipBytes(4);
+        int count = data.readUnsignedShort();
+        byte[] buf = new byte[256];
+        for (int i = 1; i < count; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case 1: //Utf8
+                    int len = data.readUnsignedShort();
+                    if (len > buf.length) {
+                        buf = new byte[len];
+                    }
+                    data.readFully(buf, 0, len);
+                    for (byte[] descriptor : descriptors) {
+                        if (equals(buf, len, descriptor)) {
+                            return true;
+                        }
+                    }
+                    break;
+                case 7: //Class
+                case 8: //String
+                case 16: //MethodType
+                case 19: //Module
+                case 20: //Package
+                    data.skipBytes(2);
+                    break;
+                case 15: //MethodHandle
+                    data.skipBytes(3);
+                    break;
+                case 3: //Integer
+                case 4: //Float
+                case 9: //Fieldref
+                case 10: //Methodref
+                case 11: //InterfaceMethodref
+                case 12: //NameAndType
+                case 17: //Dynamic
+                case 18: //InvokeDynamic
+                    data.skipBytes(4);
+                    break;
+                case 5: //Long
+                case 6: //Double
+                    data.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equals(byte[] buf, int len, byte[] descriptor) {
+        if (len != descriptor.length) {
+            return false;
+        }
+        for (int i = len - 1; i >= 0; i--) {
+            if (buf[i] != descriptor[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 从包pkgName中获取所有的Class
      *
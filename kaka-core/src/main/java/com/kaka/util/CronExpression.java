@@ -0,0 +1,342 @@
+package com.kaka.util;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * cron表达式，语法与Quartz一致
+ * <br>
+ * 字段依次为：秒 分 时 日 月 周 [年]，周的取值1-7依次为SUN-SAT，月及周可使用英文缩写；
+ * 支持 * ? , - / 以及日字段中表示月末最后一天的L，不支持W及#。
+ * 与Quartz相同，日与周不能同时指定取值，其中之一须为?或*。
+ * <br>
+ * 表达式在构造时预编译为各字段的位图，计算下次执行时间时逐字段查找下一个置位，
+ * 查找次数只与字段数量有关（跨年查找除外），不随执行间隔增长。
+ *
+ * @author zkpursuit
+ */
+public final class CronExpression {
+
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+    private static final String[] DAYS = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    private static final int MIN_YEAR = 1970;
+    private static final int MAX_YEAR = 2299;
+    /**
+     * 未指定年字段时，查找下次执行时间最多向后跨越的年数，2月29日之类的日期最多间隔8年
+     */
+    private static final int MAX_YEARS_AHEAD = 8;
+
+    private final String expression;
+    private final ZoneId zone;
+    private final long seconds;
+    private final long minutes;
+    private final int hours;
+    private final int daysOfMonth;
+    private final int months;
+    private final int daysOfWeek;
+    private final BitSet years;
+    private final boolean lastDayOfMonth;
+    private final boolean anyDayOfMonth;
+    private final boolean anyDayOfWeek;
+
+    /**
+     * 构造方法，使用系统默认时区
+     *
+     * @param expression cron表达式
+     */
+    public CronExpression(String expression) {
+        this(expression, ZoneId.systemDefault());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param expression cron表达式
+     * @param zone       时区
+     */
+    public CronExpression(String expression, ZoneId zone) {
+        if (expression == null) {
+            throw new NullPointerException("expression");
+        }
+        String[] fields = expression.trim().toUpperCase(Locale.ROOT).split("\\s+");
+        if (fields.length != 6 && fields.length != 7) {
+            throw new IllegalArgumentException(String.format("cron表达式须包含6或7个字段：%s", expression));
+        }
+        this.expression = expression;
+        this.zone = zone == null ? ZoneId.systemDefault() : zone;
+        this.seconds = parse(fields[0], 0, 59, null, expression);
+        this.minutes = parse(fields[1], 0, 59, null, expression);
+        this.hours = (int) parse(fields[2], 0, 23, null, expression);
+        String dom = fields[3];
+        this.lastDayOfMonth = "L".equals(dom);
+        this.anyDayOfMonth = "?".equals(dom) || "*".equals(dom);
+        this.daysOfMonth = lastDayOfMonth || "?".equals(dom) ? 0 : (int) parse(dom, 1, 31, null, expression);
+        this.months = (int) parse(fields[4], 1, 12, MONTHS, expression);
+        String dow = fields[5];
+        this.anyDayOfWeek = "?".equals(dow) || "*".equals(dow);
+        this.daysOfWeek = "?".equals(dow) ? 0 : (int) parse(dow, 1, 7, DAYS, expression);
+        if (!anyDayOfMonth && !anyDayOfWeek) {
+            throw new IllegalArgumentException(String.format("cron表达式的日与周不能同时指定取值，其中之一须为?或*：%s", expression));
+        }
+        if (fields.length == 7 && !"*".equals(fields[6])) {
+            this.years = new BitSet();
+            for (String part : fields[6].split(",")) {
+                int[] range = range(part, MIN_YEAR, MAX_YEAR, null, expression);
+                for (int i = range[0]; i <= range[1]; i += range[2]) {
+                    this.years.set(i);
+                }
+            }
+        } else {
+            this.years = null;
+        }
+    }
+
+    /**
+     * 解析字段为位图
+     *
+     * @param field      字段
+     * @param min        最小值
+     * @param max        最大值，不超过63
+     * @param names      取值别名，下标0对应min
+     * @param expression 完整表达式，用于异常信息
+     * @return 位图，第n位为1表示取值n有效
+     */
+    private static long parse(String field, int min, int max, String[] names, String expression) {
+        if ("*".equals(field) || "?".equals(field)) {
+            return bits(min, max, 1);
+        }
+        long mask = 0;
+        for (String part : field.split(",")) {
+            int[] range = range(part, min, max, names, expression);
+            if (range[0] <= range[1]) {
+                mask |= bits(range[0], range[1], range[2]);
+            } else {
+                //跨越边界的范围，比如FRI-MON
+                int size = max - min + 1;
+                for (int i = range[0]; i <= range[1] + size; i += range[2]) {
+                    mask |= 1L << (i > max ? i - size : i);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 解析单个范围
+     *
+     * @return [起始值, 结束值, 步长]
+     */
+    private static int[] range(String part, int min, int max, String[] names, String expression) {
+        int step = 1;
+        int slash = part.indexOf('/');
+        if (slash >= 0) {
+            step = value(part.substring(slash + 1), 1, Integer.MAX_VALUE, null, expression);
+            part = part.substring(0, slash);
+        }
+        int start, end;
+        if ("*".equals(part) || "?".equals(part)) {
+            start = min;
+            end = max;
+        } else {
+            int dash = part.indexOf('-');
+            if (dash > 0) {
+                start = value(part.substring(0, dash), min, max, names, expression);
+                end = value(part.substring(dash + 1), min, max, names, expression);
+            } else {
+                start = value(part, min, max, names, expression);
+                end = slash >= 0 ? max : start;
+            }
+        }
+        return new int[]{start, end, step};
+    }
+
+    private static int value(String str, int min, int max, String[] names, String expression) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(str)) {
+                    return min + i;
+                }
+            }
+        }
+        int value;
+        try {
+            value = Integer.parseInt(str);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("cron表达式中存在不支持的取值%s：%s", str, expression));
+        }
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(String.format("cron表达式中的取值%s超出范围[%s, %s]：%s", str, min, max, expression));
+        }
+        return value;
+    }
+
+    private static long bits(int from, int to, int step) {
+        if (step == 1) {
+            return (-1L >>> (63 - to)) & (-1L << from);
+        }
+        long mask = 0;
+        for (int i = from; i <= to; i += step) {
+            mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /**
+     * 查找不小于from的下一个置位
+     *
+     * @return 置位下标，不存在时返回-1
+     */
+    private static int next(long mask, int from) {
+        if (from > 63) {
+            return -1;
+        }
+        long m = mask & (-1L << from);
+        return m == 0 ? -1 : Long.numberOfTrailingZeros(m);
+    }
+
+    private static int next(int mask, int from) {
+        return next(mask & 0xFFFFFFFFL, from);
+    }
+
+    /**
+     * 指定年月中有效日期的位图
+     */
+    private int daysMask(int year, int month) {
+        LocalDate first = LocalDate.of(year, month, 1);
+        int length = first.lengthOfMonth();
+        int monthMask = (int) bits(1, length, 1);
+        int domMask = lastDayOfMonth ? 1 << length : daysOfMonth;
+        //当月1日为周几，1-7依次为SUN-SAT
+        int firstDow = first.getDayOfWeek() == DayOfWeek.SUNDAY ? 1 : first.getDayOfWeek().getValue() + 1;
+        int dowMask = 0;
+        for (int dow = 1; dow <= 7; dow++) {
+            if ((daysOfWeek & (1 << dow)) != 0) {
+                for (int day = (dow - firstDow + 7) % 7 + 1; day <= length; day += 7) {
+                    dowMask |= 1 << day;
+                }
+            }
+        }
+        int mask;
+        if (anyDayOfMonth && anyDayOfWeek) {
+            mask = monthMask;
+        } else if (anyDayOfMonth) {
+            mask = dowMask;
+        } else {
+            mask = domMask;
+        }
+        return mask & monthMask;
+    }
+
+    /**
+     * 计算指定时间之后的下次执行时间
+     *
+     * @param afterMillis 以毫秒为单位的时间点
+     * @return 以毫秒为单位的下次执行时间点，不存在时返回-1
+     */
+    public long next(long afterMillis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(afterMillis), zone).withNano(0).plusSeconds(1);
+        int year = time.getYear();
+        int month = time.getMonthValue();
+        int day = time.getDayOfMonth();
+        int hour = time.getHour();
+        int minute = time.getMinute();
+        int second = time.getSecond();
+        int lastYear = years == null ? year + MAX_YEARS_AHEAD : years.length() - 1;
+        while (year <= lastYear) {
+            if (years != null && !years.get(year)) {
+                year = years.nextSetBit(year);
+                if (year < 0 || year > lastYear) {
+                    return -1;
+                }
+                month = 1;
+                day = 1;
+                hour = minute = second = 0;
+            }
+            int m = next(months, month);
+            if (m < 0) {
+                year++;
+                month = 1;
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (m != month) {
+                month = m;
+                day = 1;
+                hour = minute = second = 0;
+            }
+            int d = next(daysMask(year, month), day);
+            if (d < 0) {
+                month++;
+                day = 1;
+                hour = minute = second = 0;
+                if (month > 12) {
+                    year++;
+                    month = 1;
+                }
+                continue;
+            }
+            if (d != day) {
+                day = d;
+                hour = minute = second = 0;
+            }
+            int h = next(hours, hour);
+            if (h < 0) {
+                day++;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (h != hour) {
+                hour = h;
+                minute = second = 0;
+            }
+            int mi = next(minutes, minute);
+            if (mi < 0) {
+                hour++;
+                minute = second = 0;
+                if (hour > 23) {
+                    day++;
+                    hour = 0;
+                }
+                continue;
+            }
+            if (mi != minute) {
+                minute = mi;
+                second = 0;
+            }
+            int s = next(seconds, second);
+            if (s < 0) {
+                minute++;
+                second = 0;
+                if (minute > 59) {
+                    hour++;
+                    minute = 0;
+                    if (hour > 23) {
+                        day++;
+                        hour = 0;
+                    }
+                }
+                continue;
+            }
+            ZonedDateTime fire = LocalDateTime.of(year, month, day, hour, minute, s).atZone(zone);
+            return fire.toInstant().toEpochMilli();
+        }
+        return -1;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+}
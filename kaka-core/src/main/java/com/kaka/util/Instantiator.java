@@ -0,0 +1,147 @@
+package com.kaka.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+/**
+ * 无参构造方法的实例化器，按类生成并缓存{@link Supplier}，创建对象的开销与直接new相当
+ * <br>
+ * 优先以{@link LambdaMetafactory}将构造方法生成为{@link Supplier}的实现类；
+ * 无法生成时（如JDK8下非public或由其它类加载器加载的类）退化为{@link MethodHandle}调用，仍远快于反射。
+ *
+ * @author zkpursuit
+ */
+public final class Instantiator {
+
+    private static final MethodType SUPPLIER_TYPE = MethodType.methodType(Supplier.class);
+    private static final MethodType GET_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * JDK9及以上的MethodHandles.privateLookupIn，JDK8下为null
+     */
+    private static final MethodHandle PRIVATE_LOOKUP_IN;
+
+    static {
+        MethodHandle mh;
+        try {
+            mh = MethodHandles.lookup().findStatic(MethodHandles.class, "privateLookupIn",
+                    MethodType.methodType(MethodHandles.Lookup.class, Class.class, MethodHandles.Lookup.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            mh = null;
+        }
+        PRIVATE_LOOKUP_IN = mh;
+    }
+
+    private static final ClassValue<Supplier<?>> SUPPLIERS = new ClassValue<Supplier<?>>() {
+        @Override
+        protected Supplier<?> computeValue(Class<?> type) {
+            return generate(type);
+        }
+    };
+
+    private Instantiator() {
+    }
+
+    /**
+     * 获取类的实例化器，同一个类仅生成一次
+     *
+     * @param <T> 类型限定
+     * @param cls 类，必须声明无参构造方法
+     * @return 实例化器
+     * @throws Error 非具体类或未声明无参构造方法
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> of(Class<T> cls) {
+        return (Supplier<T>) SUPPLIERS.get(cls);
+    }
+
+    private static Supplier<?> generate(Class<?> cls) {
+        if (cls.isInterface() || Modifier.isAbstract(cls.getModifiers())) {
+            throw new Error(String.format("%s不可实例化", cls.getTypeName()));
+        }
+        Constructor<?> con;
+        try {
+            con = cls.getDeclaredConstructor();
+        } catch (NoSuchMethodException | SecurityException ex) {
+            throw new Error(String.format("%s必须声明一个无参构造方法", cls.getTypeName()), ex);
+        }
+        MethodHandles.Lookup lookup = lookup(cls, con);
+        if (lookup != null) {
+            try {
+                MethodHandle target = lookup.findConstructor(cls, MethodType.methodType(void.class));
+                CallSite site = LambdaMetafactory.metafactory(lookup, "get", SUPPLIER_TYPE, GET_TYPE, target, MethodType.methodType(cls));
+                return (Supplier<?>) site.getTarget().invokeExact();
+            } catch (Throwable ex) {
+                //退化为MethodHandle调用
+            }
+        }
+        MethodHandle handle;
+        try {
+            con.setAccessible(true);
+            handle = MethodHandles.lookup().unreflectConstructor(con).asType(GET_TYPE);
+        } catch (IllegalAccessException | RuntimeException ex) {
+            throw new Error(String.format("%s的无参构造方法不可访问", cls.getTypeName()), ex);
+        }
+        return new HandleSupplier(handle);
+    }
+
+    /**
+     * 可生成Lambda实现类的查找上下文，生成的实现类与其宿主类同属一个类加载器，须能访问构造方法
+     *
+     * @param cls 类
+     * @param con 无参构造方法
+     * @return 查找上下文，无法生成时返回null
+     */
+    private static MethodHandles.Lookup lookup(Class<?> cls, Constructor<?> con) {
+        if (PRIVATE_LOOKUP_IN != null) {
+            try {
+                return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invokeExact(cls, MethodHandles.lookup());
+            } catch (Throwable ex) {
+                return null;
+            }
+        }
+        if (!Modifier.isPublic(con.getModifiers())) {
+            return null;
+        }
+        for (Class<?> c = cls; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return null;
+            }
+        }
+        try {
+            if (Class.forName(cls.getName(), false, Instantiator.class.getClassLoader()) != cls) {
+                return null;
+            }
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return null;
+        }
+        return MethodHandles.lookup();
+    }
+
+    private static final class HandleSupplier implements Supplier<Object> {
+
+        private final MethodHandle handle;
+
+        HandleSupplier(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object get() {
+            try {
+                return handle.invokeExact();
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.kaka.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数线性分桶的延迟直方图，相对误差不超过12.5%
+ * <br>
+ * 小于8的取值各占一个桶，其余取值按最高位分段、每段再按次高3位等分为8个桶，最大可记录2^41纳秒（约36分钟），超出时计入最后一个桶。
+ * 桶计数按线程分散到多个条带中，多线程同时记录时互不竞争同一缓存行，读取时再汇总所有条带；
+ * 条带数量不超过CPU核数（最多16个），每个条带约2.5KB，首次被记录时才分配，少有并发记录的直方图只占用一个条带。
+ *
+ * @author zkpursuit
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BIT = 40;
+    private static final int BUCKETS = SUB_COUNT + (MAX_BIT - SUB_BITS + 1) * SUB_COUNT;
+    private static final int STRIPES = MathUtils.nextPowerOfTwo(Math.min(Runtime.getRuntime().availableProcessors(), 16));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 获取条带，首次使用时分配
+     */
+    private AtomicLongArray stripe(int index) {
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripe = new AtomicLongArray(BUCKETS);
+            if (!stripes.compareAndSet(index, null, stripe)) {
+                stripe = stripes.get(index);
+            }
+        }
+        return stripe;
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        if (msb > MAX_BIT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (msb - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 桶内取值的上界
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int msb = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << (msb - SUB_BITS)) - 1;
+    }
+
+    /**
+     * 记录一个取值
+     *
+     * @param value 取值，一般为纳秒
+     */
+    public void record(long value) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        stripe(stripe).incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 记录次数
+     *
+     * @return 次数
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * 平均值
+     *
+     * @return 平均值，无记录时返回0
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * 最大值
+     *
+     * @return 最大值
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * 百分位数
+     *
+     * @param percentile 百分位，取值(0, 100]
+     * @return 取值所在桶的上界，不超过最大值；无记录时返回0
+     */
+    public long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = stripe.get(i);
+                counts[i] += c;
+                total += c;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        if (rank <= 0) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * 清空所有记录，与记录操作并发时结果不保证精确
+     */
+    public void reset() {
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+}
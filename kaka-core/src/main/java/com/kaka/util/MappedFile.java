@@ -0,0 +1,242 @@
+package com.kaka.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射的追加写文件
+ * <br>
+ * 文件由连续的记录组成，每条记录格式为：[int 数据长度][int 数据CRC32校验码][数据]，
+ * 数据长度为0或校验不通过处即为文件有效内容的结尾，进程崩溃时写了一半的记录将在重新打开时被丢弃。
+ * <br>
+ * 写入仅复制到映射内存，由操作系统异步刷盘，进程崩溃不丢失数据；需要在断电时不丢失数据则应调用{@link #force()}。
+ * <br>
+ * 关闭及扩容时立即解除旧的内存映射，关闭后即可移动、删除或重新映射文件，不必等待映射缓冲区被GC回收；
+ * 当前jvm不支持解除映射时仍由GC回收。
+ *
+ * @author zkpursuit
+ */
+public final class MappedFile implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final MethodHandle UNMAP;
+
+    static {
+        MethodHandle unmap;
+        try {
+            //jdk9及以上
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unmap = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+                    MethodType.methodType(void.class, ByteBuffer.class)).bindTo(field.get(null));
+        } catch (Throwable ex) {
+            try {
+                //jdk8
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = cleaner.getReturnType().getMethod("clean");
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                unmap = MethodHandles.filterReturnValue(lookup.unreflect(cleaner), lookup.unreflect(clean))
+                        .asType(MethodType.methodType(void.class, ByteBuffer.class));
+            } catch (Throwable e) {
+                unmap = null;
+            }
+        }
+        UNMAP = unmap;
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final boolean growable;
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer buffer;
+    private int position;
+
+    /**
+     * 打开或创建文件
+     *
+     * @param file        文件
+     * @param initialSize 初始映射大小，已存在的文件大于此值时按文件大小映射
+     * @param growable    空间不足时是否扩容，不扩容时{@link #append(byte[], int, int)}返回-1
+     * @throws IOException 文件读写异常
+     */
+    public MappedFile(File file, int initialSize, boolean growable) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        this.file = file;
+        this.growable = growable;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        long size = Math.max(initialSize, channel.size());
+        if (size > Integer.MAX_VALUE) {
+            close();
+            throw new IOException(String.format("文件%s超出内存映射的大小限制", file));
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.position = scan(null);
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param data   数据
+     * @param offset 数据起始位置
+     * @param length 数据长度，须大于0
+     * @return 记录在文件中的起始位置，空间不足且不可扩容时返回-1
+     * @throws IOException 扩容异常
+     */
+    public synchronized int append(byte[] data, int offset, int length) throws IOException {
+        if (length <= 0) {
+            throw new IllegalArgumentException("length must be > 0: " + length);
+        }
+        int frameSize = HEADER_SIZE + length;
+        //预留下一条记录的长度位，保证结尾处长度为0
+        if (position + frameSize + 4 > buffer.capacity()) {
+            if (!growable) {
+                return -1;
+            }
+            long newSize = Math.max((long) buffer.capacity() << 1, (long) position + frameSize + 4);
+            if (newSize > Integer.MAX_VALUE) {
+                throw new IOException(String.format("文件%s超出内存映射的大小限制", file));
+            }
+            MappedByteBuffer old = buffer;
+            old.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            unmap(old);
+        }
+        crc.reset();
+        crc.update(data, offset, length);
+        int start = position;
+        ByteBuffer buf = buffer;
+        buf.position(start + HEADER_SIZE);
+        buf.put(data, offset, length);
+        buf.putInt(start + frameSize, 0);
+        buf.putInt(start + 4, (int) crc.getValue());
+        //最后写入长度，长度位不为0时记录才被视为有效
+        buf.putInt(start, length);
+        position = start + frameSize;
+        return start;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param data 数据
+     * @return 记录在文件中的起始位置，空间不足且不可扩容时返回-1
+     * @throws IOException 扩容异常
+     */
+    public int append(byte[] data) throws IOException {
+        return append(data, 0, data.length);
+    }
+
+    /**
+     * 从头顺序读取所有有效记录
+     *
+     * @param consumer 记录数据的消费者，传入的缓冲区仅在回调中有效
+     * @return 有效内容的结尾位置
+     */
+    public synchronized int scan(Consumer<ByteBuffer> consumer) {
+        ByteBuffer buf = buffer.duplicate();
+        int limit = buf.capacity();
+        int pos = 0;
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_SIZE <= limit) {
+            int length = buf.getInt(pos);
+            if (length <= 0 || pos + HEADER_SIZE + length > limit) {
+                break;
+            }
+            int checksum = buf.getInt(pos + 4);
+            buf.limit(pos + HEADER_SIZE + length).position(pos + HEADER_SIZE);
+            ByteBuffer data = buf.slice();
+            crc.reset();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(data);
+            }
+            buf.clear();
+            pos += HEADER_SIZE + length;
+        }
+        return pos;
+    }
+
+    /**
+     * 将映射内存中的修改强制刷入磁盘
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * 有效内容的结尾位置
+     *
+     * @return 已写入的字节数
+     */
+    public synchronized int position() {
+        return position;
+    }
+
+    /**
+     * 当前映射的大小
+     *
+     * @return 字节数
+     */
+    public synchronized int capacity() {
+        return buffer.capacity();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 解除内存映射，调用后不可再访问该缓冲区
+     *
+     * @param buffer 映射缓冲区
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAP == null) {
+            return;
+        }
+        try {
+            UNMAP.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable ex) {
+            //无法解除时由GC回收
+        }
+    }
+
+    /**
+     * 刷盘并解除内存映射后关闭文件，关闭后不可再读写
+     *
+     * @throws IOException 文件关闭异常
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        MappedByteBuffer buf = buffer;
+        if (buf != null) {
+            buffer = null;
+            buf.force();
+            unmap(buf);
+        }
+        channel.close();
+        raf.close();
+    }
+
+}
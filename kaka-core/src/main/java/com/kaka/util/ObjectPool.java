@@ -4,6 +4,7 @@ import com.kaka.util.ObjectPool.Poolable;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 对象池
@@ -25,6 +26,10 @@ abstract public class ObjectPool<T extends Poolable> {
      * 对象存储队列
      */
     private Queue<T> freeObjects;
+    /**
+     * 闲置对象数量，队列的size方法需遍历整个队列，故单独计数
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
 
     /**
      * 构造方法
@@ -39,9 +44,20 @@ abstract public class ObjectPool<T extends Poolable> {
      * @param max 对象池中可缓存的最大池化对象
      */
     public ObjectPool(int max) {
+        this(max, true);
+    }
+
+    /**
+     * 构造方法，供自行管理闲置对象的子类使用
+     *
+     * @param max    对象池中可缓存的最大池化对象
+     * @param queued 是否创建默认的闲置对象队列，为false时子类须重写{@link #obtain()}、{@link #idle(Poolable)}、
+     *               {@link #clear()}及{@link #getIdleCount()}
+     */
+    protected ObjectPool(int max, boolean queued) {
         this.max = max;
-        if (this.max > 0) {
-            freeObjects = new ConcurrentLinkedQueue();
+        if (this.max > 0 && queued) {
+            freeObjects = new ConcurrentLinkedQueue<>();
         }
     }
 
@@ -58,7 +74,13 @@ abstract public class ObjectPool<T extends Poolable> {
      * @return 可用对象
      */
     public T obtain() {
-        return (freeObjects == null || freeObjects.isEmpty()) ? newObject() : freeObjects.poll();
+        //并发时isEmpty与poll之间队列可能已被取空，故以poll结果为准
+        T object = freeObjects == null ? null : freeObjects.poll();
+        if (object == null) {
+            return newObject();
+        }
+        idleCount.decrementAndGet();
+        return object;
     }
 
     /**
@@ -75,10 +97,17 @@ abstract public class ObjectPool<T extends Poolable> {
         }
         object.reset();
         if (freeObjects != null) {
-            int idleCount = freeObjects.size();
-            if (idleCount < max) {
-                freeObjects.add(object);
-                peak = Math.max(peak, idleCount + 1);
+            //先占用计数再入队，保证闲置对象不超过max
+            int count;
+            do {
+                count = idleCount.get();
+                if (count >= max) {
+                    return;
+                }
+            } while (!idleCount.compareAndSet(count, count + 1));
+            freeObjects.add(object);
+            if (count + 1 > peak) {
+                peak = count + 1;
             }
         }
     }
@@ -88,7 +117,9 @@ abstract public class ObjectPool<T extends Poolable> {
      */
     public void clear() {
         if (freeObjects != null) {
-            freeObjects.clear();
+            while (freeObjects.poll() != null) {
+                idleCount.decrementAndGet();
+            }
         }
     }
 
@@ -98,10 +129,7 @@ abstract public class ObjectPool<T extends Poolable> {
      * @return 闲置对象总数
      */
     public int getIdleCount() {
-        if (freeObjects != null) {
-            return freeObjects.size();
-        }
-        return 0;
+        return Math.max(0, idleCount.get());
     }
 
     /**
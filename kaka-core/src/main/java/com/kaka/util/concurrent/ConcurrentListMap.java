@@ -2,80 +2,121 @@ package com.kaka.util.concurrent;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 /**
  * 键对应列表集合的Map结构
+ * <br>
+ * 以{@link ConcurrentHashMap}存储键，每个键对应一个写时复制的列表，
+ * 读操作（get、containsKey、forEach等）均不加锁，遍历的是列表的快照，
+ * 遍历过程中其它线程对列表的修改不影响本次遍历，也不会阻塞写操作。
+ * <br>
+ * 写操作在键所在的{@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)}中完成，
+ * 与移除键原子地交替执行，不会写入已被移除的列表；列表为空时移除其键。
+ * <br>
+ * 适合读多写少的场景，比如事件订阅列表。
  *
  * @param <K> 键
  * @param <V> 列表值
  */
 public class ConcurrentListMap<K, V> implements Serializable {
 
-    private Map<K, List<V>> map;
+    private final ConcurrentMap<K, List<V>> map;
 
     public ConcurrentListMap() {
-        map = new HashMap<>();
+        map = new ConcurrentHashMap<>();
     }
 
     public ConcurrentListMap(int initialCapacity) {
-        map = new HashMap<>(initialCapacity);
+        map = new ConcurrentHashMap<>(initialCapacity);
     }
 
     public void put(K key, V value) {
-        List<V> list;
-        synchronized (map) {
-            list = map.get(key);
+        map.compute(key, (K k, List<V> list) -> {
             if (list == null) {
-                list = Collections.synchronizedList(new ArrayList<>());
-                map.put(key, list);
+                list = new CopyOnWriteArrayList<>();
             }
-        }
-        list.add(value);
+            list.add(value);
+            return list;
+        });
+    }
+
+    /**
+     * 当键对应的列表中不存在此值时才添加
+     *
+     * @param key   键
+     * @param value 值
+     * @return true 添加成功，false 列表中已存在此值
+     */
+    public boolean putIfAbsent(K key, V value) {
+        final boolean[] added = new boolean[1];
+        map.compute(key, (K k, List<V> list) -> {
+            if (list == null) {
+                list = new CopyOnWriteArrayList<>();
+            }
+            added[0] = ((CopyOnWriteArrayList<V>) list).addIfAbsent(value);
+            return list;
+        });
+        return added[0];
     }
 
+    /**
+     * 获取键对应的列表，返回的列表可安全遍历，遍历的是调用iterator时的快照；
+     * 键被移除后返回的列表不再随写操作更新
+     *
+     * @param key 键
+     * @return 键对应的列表，不存在时返回null
+     */
     public List<V> get(K key) {
-        synchronized (map) {
-            return map.get(key);
-        }
+        return map.get(key);
     }
 
     public boolean containsKey(K key) {
-        return get(key) != null;
+        return map.containsKey(key);
     }
 
+    /**
+     * 从键对应的列表中移除值，列表为空时一并移除键
+     *
+     * @param key   键
+     * @param value 值
+     * @return true 移除成功
+     */
     public boolean remove(K key, V value) {
-        List<V> list = get(key);
-        if (list != null) {
-            return list.remove(value);
-        }
-        return false;
+        final boolean[] removed = new boolean[1];
+        map.computeIfPresent(key, (K k, List<V> list) -> {
+            removed[0] = list.remove(value);
+            return list.isEmpty() ? null : list;
+        });
+        return removed[0];
     }
 
+    /**
+     * 清空键对应的列表并移除键，同{@link #remove(Object)}
+     *
+     * @param key 键
+     */
     public void removeAll(K key) {
-        List<V> list = get(key);
-        if (list != null) {
-            list.clear();
-        }
+        remove(key);
     }
 
     public void remove(K key) {
-        removeAll(key);
-        synchronized (map) {
-            map.remove(key);
+        List<V> list = map.remove(key);
+        if (list != null) {
+            list.clear();
         }
     }
 
     public boolean containsValue(V value) {
-        synchronized (map) {
-            Collection<List<V>> vs = map.values();
-            for (List<V> list : vs) {
-                if (list.contains(value)) {
-                    return true;
-                }
+        for (List<V> list : map.values()) {
+            if (list.contains(value)) {
+                return true;
             }
-            return false;
         }
+        return false;
     }
 
     public void forEach(K key, Consumer<? super V> action) {
@@ -87,21 +128,22 @@ public class ConcurrentListMap<K, V> implements Serializable {
         }
     }
 
+    /**
+     * 所有键的只读视图，可安全的并发遍历
+     *
+     * @return 键集合
+     */
     public Set<K> keySet() {
-        synchronized (map) {
-            return map.keySet();
-        }
+        return Collections.unmodifiableSet(map.keySet());
     }
 
     public void clear() {
-        synchronized (map) {
-            map.forEach((K key, List<V> list) -> {
-                if (list != null && !list.isEmpty()) {
-                    list.clear();
-                }
-            });
-            map.clear();
-        }
+        map.forEach((K key, List<V> list) -> {
+            if (list != null && !list.isEmpty()) {
+                list.clear();
+            }
+        });
+        map.clear();
     }
 
-}
\ No newline at end of file
+}
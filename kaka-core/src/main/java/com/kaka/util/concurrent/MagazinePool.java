@@ -0,0 +1,424 @@
+package com.kaka.util.concurrent;
+
+import com.kaka.util.ObjectPool;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 基于线程本地弹匣的对象池
+ * <br>
+ * 每个线程持有两个固定容量的弹匣（对象数组），取出及放回对象仅操作本线程的弹匣，无任何同步；
+ * 两个弹匣均为空（取出时）或均已满（放回时）才访问共享的仓库，以一个空弹匣交换一个满弹匣（或相反），
+ * 每次加锁即搬运一整个弹匣的对象，调用方与处理线程不同（比如在调用线程取出、在线程池中放回）时也只有弹匣在线程间流动。
+ * <br>
+ * 仓库最多存放约max个闲置对象，超出时丢弃换入的满弹匣中的对象，此外每个线程最多缓存2个弹匣的对象，
+ * 故闲置对象总数上限约为max + 使用过对象池的线程数 × 2 × 弹匣容量；每个对象池各自持有线程本地弹匣，
+ * 多个对象池（比如每个事件的命令对象池）的总上限再乘以对象池数量，线程较多时应减小弹匣容量。
+ * <br>
+ * 仓库及各线程弹匣各自维护对象数量，存取时仅以有序写更新本线程的计数，不产生共享写竞争；
+ * 获取闲置对象总数时累加仓库及各线程的计数，耗时与使用过对象池的线程数相关，与对象数量无关。
+ * 已结束线程缓存的对象随线程回收，回收后不再计入。
+ * <br>
+ * 虚拟线程数量多且生命周期短，不使用线程本地弹匣，直接在仓库中逐个存取；
+ * 线程是否为虚拟线程在其首次存取时判定并记录在线程本地变量中。
+ * <br>
+ * 清空对象池后，各线程弹匣中的对象在该线程下次与仓库交换弹匣时丢弃，此前仍可被取出。
+ *
+ * @param <T> 可闲置对象类型
+ * @author zkpursuit
+ */
+abstract public class MagazinePool<T extends ObjectPool.Poolable> extends ObjectPool<T> {
+
+    /**
+     * 默认弹匣容量
+     */
+    public static final int DEFAULT_MAGAZINE_SIZE = 16;
+
+    private static final AtomicIntegerFieldUpdater<Stat> COUNT_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Stat.class, "count");
+
+    /**
+     * 虚拟线程的线程本地标记，不持有弹匣
+     */
+    private static final Cache SHARED = new Cache(0, 0);
+
+    private final int magazineSize;
+    /**
+     * 仓库中满弹匣的数量上限
+     */
+    private final int depotLimit;
+    private final ArrayDeque<Magazine> fulls = new ArrayDeque<>();
+    private final ArrayDeque<Magazine> empties = new ArrayDeque<>();
+    /**
+     * 虚拟线程存取对象使用的仓库弹匣
+     */
+    private Magazine loose;
+    /**
+     * 仓库中的对象数量，仅在持有锁时访问
+     */
+    private int depotCount;
+    private volatile int peak;
+    /**
+     * 清空对象池时递增，线程本地弹匣交换弹匣时发现版本变化则丢弃其中的对象
+     */
+    private volatile int generation;
+    private final ReferenceQueue<Cache> reclaimed = new ReferenceQueue<>();
+    private final Set<CacheRef> cacheRefs = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Cache> caches = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            if (VirtualThreads.isVirtual(Thread.currentThread())) {
+                return SHARED;
+            }
+            Cache cache = new Cache(magazineSize, generation);
+            cacheRefs.add(new CacheRef(cache, reclaimed));
+            return cache;
+        }
+    };
+
+    /**
+     * 构造方法
+     *
+     * @param max          仓库中可缓存的最大池化对象，小于等于0时不池化
+     * @param magazineSize 弹匣容量
+     */
+    public MagazinePool(int max, int magazineSize) {
+        super(max, false);
+        if (magazineSize <= 0) {
+            throw new IllegalArgumentException("magazineSize must be > 0: " + magazineSize);
+        }
+        this.magazineSize = magazineSize;
+        this.depotLimit = Math.max(1, max / magazineSize);
+        this.loose = new Magazine(magazineSize);
+    }
+
+    /**
+     * 构造方法，弹匣容量为max的1/4且不超过{@link #DEFAULT_MAGAZINE_SIZE}
+     *
+     * @param max 仓库中可缓存的最大池化对象，小于等于0时不池化
+     */
+    public MagazinePool(int max) {
+        this(max, Math.max(1, Math.min(DEFAULT_MAGAZINE_SIZE, max / 4)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T obtain() {
+        if (max <= 0) {
+            return newObject();
+        }
+        Cache cache = caches.get();
+        if (cache == SHARED) {
+            return obtainShared();
+        }
+        Magazine loaded = cache.loaded;
+        if (loaded.count == 0) {
+            if (cache.previous.count > 0) {
+                cache.loaded = cache.previous;
+                cache.previous = loaded;
+            } else {
+                refresh(cache);
+                Magazine full = exchangeEmpty(cache.previous, cache);
+                if (full == null) {
+                    return newObject();
+                }
+                cache.previous = loaded;
+                cache.loaded = full;
+            }
+            loaded = cache.loaded;
+        }
+        Object[] items = loaded.items;
+        int index = --loaded.count;
+        T object = (T) items[index];
+        items[index] = null;
+        cache.add(-1);
+        return object;
+    }
+
+    @Override
+    public void idle(T object) {
+        if (max <= 0) {
+            return;
+        }
+        if (object == null) {
+            throw new IllegalArgumentException("object cannot be null.");
+        }
+        object.reset();
+        Cache cache = caches.get();
+        if (cache == SHARED) {
+            idleShared(object);
+            return;
+        }
+        Magazine loaded = cache.loaded;
+        if (loaded.count == magazineSize && !refresh(cache)) {
+            Magazine previous = cache.previous;
+            if (previous.count == 0) {
+                cache.loaded = previous;
+                cache.previous = loaded;
+            } else {
+                cache.previous = loaded;
+                cache.loaded = exchangeFull(previous, cache);
+            }
+            loaded = cache.loaded;
+        }
+        loaded.items[loaded.count++] = object;
+        cache.add(1);
+    }
+
+    /**
+     * 与仓库交换弹匣前调用，对象池已被清空时丢弃当前线程弹匣中的对象
+     *
+     * @param cache 当前线程的弹匣
+     * @return true 已丢弃
+     */
+    private boolean refresh(Cache cache) {
+        int gen = this.generation;
+        if (cache.generation == gen) {
+            return false;
+        }
+        cache.loaded.clear();
+        cache.previous.clear();
+        cache.stat.generation = gen;
+        cache.generation = gen;
+        cache.count = 0;
+        COUNT_UPDATER.lazySet(cache.stat, 0);
+        return true;
+    }
+
+    /**
+     * 以空弹匣从仓库换取满弹匣
+     *
+     * @param empty 空弹匣
+     * @param cache 当前线程的弹匣
+     * @return 满弹匣，仓库中没有满弹匣时返回null
+     */
+    private Magazine exchangeEmpty(Magazine empty, Cache cache) {
+        synchronized (this) {
+            Magazine full = fulls.poll();
+            if (full == null) {
+                return null;
+            }
+            if (empties.size() < depotLimit) {
+                empties.push(empty);
+            }
+            depotCount -= full.count;
+            cache.add(full.count);
+            return full;
+        }
+    }
+
+    /**
+     * 以满弹匣从仓库换取空弹匣，仓库已满时丢弃满弹匣中的对象并作为空弹匣返回
+     *
+     * @param full  满弹匣
+     * @param cache 当前线程的弹匣
+     * @return 空弹匣
+     */
+    private Magazine exchangeFull(Magazine full, Cache cache) {
+        synchronized (this) {
+            if (fulls.size() < depotLimit) {
+                fulls.push(full);
+                depotCount += full.count;
+                cache.add(-full.count);
+                updatePeak();
+                Magazine empty = empties.poll();
+                return empty != null ? empty : new Magazine(magazineSize);
+            }
+        }
+        cache.add(-full.count);
+        full.clear();
+        return full;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T obtainShared() {
+        synchronized (this) {
+            Magazine magazine = loose;
+            if (magazine.count == 0) {
+                Magazine full = fulls.poll();
+                if (full != null) {
+                    if (empties.size() < depotLimit) {
+                        empties.push(magazine);
+                    }
+                    loose = magazine = full;
+                }
+            }
+            if (magazine.count > 0) {
+                int index = --magazine.count;
+                T object = (T) magazine.items[index];
+                magazine.items[index] = null;
+                depotCount--;
+                return object;
+            }
+        }
+        return newObject();
+    }
+
+    private void idleShared(T object) {
+        synchronized (this) {
+            Magazine magazine = loose;
+            if (magazine.count == magazineSize) {
+                if (fulls.size() >= depotLimit) {
+                    //仓库已满，丢弃新放回的对象
+                    return;
+                }
+                fulls.push(magazine);
+                Magazine empty = empties.poll();
+                loose = magazine = empty != null ? empty : new Magazine(magazineSize);
+            }
+            magazine.items[magazine.count++] = object;
+            depotCount++;
+            updatePeak();
+        }
+    }
+
+    /**
+     * 更新闲置对象数量峰值，持有锁时调用
+     *
+     * @return 当前闲置对象数量
+     */
+    private int updatePeak() {
+        int count = idleCount();
+        if (count > peak) {
+            peak = count;
+        }
+        return count;
+    }
+
+    /**
+     * 累加仓库及存活线程弹匣中的对象数量，持有锁时调用
+     */
+    private int idleCount() {
+        CacheRef ref;
+        while ((ref = (CacheRef) reclaimed.poll()) != null) {
+            cacheRefs.remove(ref);
+        }
+        long count = depotCount;
+        int gen = this.generation;
+        for (CacheRef cacheRef : cacheRefs) {
+            Stat stat = cacheRef.stat;
+            if (stat.generation == gen) {
+                count += stat.count;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    /**
+     * 清空仓库中的对象，各线程弹匣中的对象在该线程下次与仓库交换弹匣时丢弃，此前不计入闲置数量
+     */
+    @Override
+    public void clear() {
+        synchronized (this) {
+            generation++;
+            fulls.clear();
+            loose.clear();
+            depotCount = 0;
+        }
+    }
+
+    @Override
+    public int getIdleCount() {
+        synchronized (this) {
+            return updatePeak();
+        }
+    }
+
+    /**
+     * 闲置对象数量的峰值
+     * <br>
+     * 放回线程本地弹匣不加锁，不会即时更新峰值，峰值在与仓库交换弹匣及获取闲置数量或峰值时采样，
+     * 因此不小于任一时刻查询到的闲置对象数量
+     *
+     * @return 闲置对象数量的峰值
+     */
+    @Override
+    public int peak() {
+        synchronized (this) {
+            updatePeak();
+            return this.peak;
+        }
+    }
+
+    /**
+     * 弹匣容量
+     *
+     * @return 单个弹匣可容纳的对象数量
+     */
+    public int magazineSize() {
+        return this.magazineSize;
+    }
+
+    /**
+     * 弹匣
+     */
+    private static final class Magazine {
+        final Object[] items;
+        int count;
+
+        Magazine(int size) {
+            this.items = new Object[size];
+        }
+
+        void clear() {
+            for (int i = 0; i < count; i++) {
+                items[i] = null;
+            }
+            count = 0;
+        }
+    }
+
+    /**
+     * 线程弹匣中的对象数量，由所属线程以有序写更新，其它线程统计时读取；不可引用{@link Cache}
+     */
+    private static final class Stat {
+        volatile int count;
+        volatile int generation;
+    }
+
+    /**
+     * 线程本地的两个弹匣
+     */
+    private static final class Cache {
+        final Stat stat = new Stat();
+        /**
+         * 所属线程读取的版本，避免每次存取读取volatile字段
+         */
+        int generation;
+        /**
+         * 线程私有的对象数量，与stat.count保持一致
+         */
+        int count;
+        Magazine loaded;
+        Magazine previous;
+
+        Cache(int magazineSize, int generation) {
+            this.loaded = new Magazine(magazineSize);
+            this.previous = new Magazine(magazineSize);
+            this.generation = generation;
+            this.stat.generation = generation;
+        }
+
+        void add(int delta) {
+            count += delta;
+            COUNT_UPDATER.lazySet(stat, count);
+        }
+    }
+
+    /**
+     * 线程本地弹匣的虚引用，弹匣随线程回收后入队
+     */
+    private static final class CacheRef extends PhantomReference<Cache> {
+        final Stat stat;
+
+        CacheRef(Cache cache, ReferenceQueue<Cache> queue) {
+            super(cache, queue);
+            this.stat = cache.stat;
+        }
+    }
+
+}
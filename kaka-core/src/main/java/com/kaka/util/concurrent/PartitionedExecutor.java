@@ -0,0 +1,71 @@
+package com.kaka.util.concurrent;
+
+import com.kaka.util.MathUtils;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 按键分区的串行执行器
+ * <br>
+ * 内部固定数量的{@link SerialExecutor}邮箱，相同键的任务总是落入同一邮箱，
+ * 从而保证同一键的任务按提交顺序执行且互不重叠；不同邮箱的任务可在执行器中并行执行。
+ * <br>
+ * 邮箱数量固定，不会为每个键创建线程或邮箱，不同的键可能共享同一邮箱。
+ *
+ * @author zkpursuit
+ */
+public class PartitionedExecutor {
+
+    private final SerialExecutor[] mailboxes;
+    private final int mask;
+
+    /**
+     * 构造方法
+     *
+     * @param executor   驱动任务执行的执行器
+     * @param partitions 邮箱数量，将被调整为2的幂，一般设为执行器线程数的若干倍
+     */
+    public PartitionedExecutor(Executor executor, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be > 0: " + partitions);
+        }
+        int size = MathUtils.nextPowerOfTwo(partitions);
+        this.mailboxes = new SerialExecutor[size];
+        for (int i = 0; i < size; i++) {
+            this.mailboxes[i] = new SerialExecutor(executor);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 获取键对应的邮箱
+     *
+     * @param key 分区键
+     * @return 邮箱
+     */
+    public SerialExecutor mailbox(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return mailboxes[h & mask];
+    }
+
+    /**
+     * 提交任务到键对应的邮箱
+     *
+     * @param key  分区键，不能为null
+     * @param task 任务
+     */
+    public void execute(Object key, Runnable task) {
+        mailbox(key).execute(task);
+    }
+
+    /**
+     * 邮箱数量
+     *
+     * @return 邮箱数量
+     */
+    public int partitions() {
+        return mailboxes.length;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.kaka.util.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 串行执行器（邮箱），提交的任务按提交顺序依次执行，且任意时刻最多只有一个任务在执行
+ * <br>
+ * 本身不持有线程，任务由构造时传入的执行器驱动；邮箱为空时不占用任何线程。
+ *
+ * @author zkpursuit
+ */
+public class SerialExecutor implements Executor {
+
+    private static final Logger logger = Logger.getLogger(SerialExecutor.class.getTypeName());
+
+    private final Executor executor;
+    private final int batchSize;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Runnable drainer = this::drain;
+
+    /**
+     * 构造方法
+     *
+     * @param executor  驱动任务执行的执行器
+     * @param batchSize 单次占用执行器线程最多可连续执行的任务数，超出后让出线程重新排队，以保证邮箱间的公平性
+     */
+    public SerialExecutor(Executor executor, int batchSize) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.executor = executor;
+        this.batchSize = batchSize <= 0 ? Integer.MAX_VALUE : batchSize;
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param executor 驱动任务执行的执行器
+     */
+    public SerialExecutor(Executor executor) {
+        this(executor, 64);
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param task 任务
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        tasks.offer(task);
+        schedule();
+    }
+
+    /**
+     * 邮箱中尚未执行的任务是否为空
+     *
+     * @return true为空
+     */
+    public boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainer);
+            } catch (RejectedExecutionException ex) {
+                scheduled.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            runTasks(batchSize);
+        } finally {
+            scheduled.set(false);
+            reschedule();
+        }
+    }
+
+    /**
+     * 依次执行邮箱中的任务，任务抛出的异常记录日志后继续，Error向上抛出
+     *
+     * @param max 最多执行的任务数
+     */
+    private void runTasks(int max) {
+        int count = 0;
+        Runnable task;
+        while (count < max && (task = tasks.poll()) != null) {
+            count++;
+            try {
+                task.run();
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * 邮箱中仍有任务时重新提交到执行器；执行器拒绝时（比如已关闭）在当前线程执行剩余任务，
+     * 期间保持已调度标记，任务不会滞留在邮箱中且仍串行执行
+     */
+    private void reschedule() {
+        while (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainer);
+                return;
+            } catch (RejectedExecutionException ex) {
+                logger.log(Level.WARNING, "执行器拒绝执行，邮箱中剩余的任务在当前线程执行", ex);
+                try {
+                    runTasks(Integer.MAX_VALUE);
+                } finally {
+                    scheduled.set(false);
+                }
+            }
+        }
+    }
+
+}
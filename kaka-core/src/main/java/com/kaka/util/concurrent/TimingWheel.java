@@ -0,0 +1,375 @@
+package com.kaka.util.concurrent;
+
+import com.kaka.util.MathUtils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 分层时间轮定时器
+ * <br>
+ * 由单个工作线程按固定刻度推进，每层时间轮的槽位为双向链表，添加、取消定时任务均为O(1)。
+ * 第0层每个槽位跨度为一个刻度，第n层每个槽位跨度为第n-1层一整圈；
+ * 高层槽位到期时将其中的任务降级到低层，直至落入第0层的槽位并在对应刻度到期。
+ * <br>
+ * 其它线程添加或取消的任务先进入无锁队列，由工作线程在下一个刻度统一处理，时间轮结构仅由工作线程访问，无需加锁。
+ * 到期的任务提交到构造时传入的执行器执行，执行器为null时在工作线程中直接执行。
+ *
+ * @author zkpursuit
+ */
+public class TimingWheel {
+
+    private static final Logger logger = Logger.getLogger(TimingWheel.class.getTypeName());
+
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_INIT;
+        long expireTick;
+        Timeout prev;
+        Timeout next;
+        Bucket bucket;
+
+        Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消定时任务
+         *
+         * @return true 取消成功，false 已到期或已取消
+         */
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            wheel.cancelledTimeouts.offer(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        public Runnable task() {
+            return task;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            Executor executor = wheel.executor;
+            try {
+                if (executor == null) {
+                    task.run();
+                } else {
+                    executor.execute(task);
+                }
+            } catch (Throwable ex) {
+                logger.log(Level.SEVERE, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * 时间轮槽位，双向链表
+     */
+    static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * 取出槽位中的所有任务并清空槽位
+         *
+         * @return 链表头
+         */
+        Timeout detach() {
+            Timeout first = head;
+            head = tail = null;
+            return first;
+        }
+    }
+
+    private final long tickNanos;
+    private final int bits;
+    private final int mask;
+    private final Bucket[][] wheels;
+    private final Executor executor;
+    private final Thread worker;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private volatile long startTime;
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private long tick;
+
+    /**
+     * 构造方法
+     *
+     * @param tickDuration  刻度时长，即定时精度
+     * @param unit          刻度时长单位
+     * @param wheelSize     每层时间轮的槽位数量，将被调整为2的幂
+     * @param levels        时间轮层数，可覆盖的最大延迟为 刻度时长 * 槽位数量^层数，超出的任务在最高层循环降级
+     * @param executor      到期任务的执行器，为null时在工作线程中直接执行
+     * @param threadFactory 工作线程工厂，为null时使用默认的守护线程
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize, int levels, Executor executor, ThreadFactory threadFactory) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be > 0: " + tickDuration);
+        }
+        if (wheelSize <= 1 || wheelSize > (1 << 16)) {
+            throw new IllegalArgumentException("wheelSize must be in (1, 65536]: " + wheelSize);
+        }
+        if (levels <= 0) {
+            throw new IllegalArgumentException("levels must be > 0: " + levels);
+        }
+        int size = MathUtils.nextPowerOfTwo(wheelSize);
+        this.bits = Integer.numberOfTrailingZeros(size);
+        if (levels * bits > 62) {
+            levels = 62 / bits;
+        }
+        this.mask = size - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheels = new Bucket[levels][size];
+        for (int i = 0; i < levels; i++) {
+            for (int j = 0; j < size; j++) {
+                this.wheels[i][j] = new Bucket();
+            }
+        }
+        this.executor = executor;
+        if (threadFactory == null) {
+            this.worker = new Thread(this::work, "kaka-timing-wheel");
+            this.worker.setDaemon(true);
+        } else {
+            this.worker = threadFactory.newThread(this::work);
+        }
+    }
+
+    /**
+     * 构造方法，每层512个槽位，共4层
+     *
+     * @param tickDuration 刻度时长，即定时精度
+     * @param unit         刻度时长单位
+     * @param executor     到期任务的执行器，为null时在工作线程中直接执行
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, Executor executor) {
+        this(tickDuration, unit, 512, 4, executor, null);
+    }
+
+    /**
+     * 启动工作线程，添加第一个定时任务时将自动调用
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        synchronized (this) {
+            if (!started) {
+                if (stopped) {
+                    throw new IllegalStateException("TimingWheel已停止");
+                }
+                startTime = System.nanoTime();
+                started = true;
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * 停止工作线程，未到期的任务将不再执行
+     */
+    public void stop() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @param task  任务
+     * @param delay 延迟时长
+     * @param unit  延迟时长单位
+     * @return 定时任务句柄
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (stopped) {
+            throw new RejectedExecutionException("TimingWheel已停止");
+        }
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        newTimeouts.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * 工作线程循环
+     */
+    private void work() {
+        while (!stopped) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ex) {
+                    if (stopped) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            tick++;
+            processCancelled();
+            transferNewTimeouts();
+            for (int level = wheels.length - 1; level > 0; level--) {
+                int shift = level * bits;
+                if ((tick & ((1L << shift) - 1)) == 0) {
+                    cascade(wheels[level][(int) (tick >>> shift) & mask].detach());
+                }
+            }
+            Timeout timeout = wheels[0][(int) tick & mask].detach();
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                timeout.bucket = null;
+                if (timeout.expireTick <= tick) {
+                    timeout.expire();
+                } else {
+                    place(timeout);
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            Bucket bucket = timeout.bucket;
+            if (bucket != null) {
+                bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferNewTimeouts() {
+        //每个刻度最多处理10万个新任务，避免工作线程长时间无法推进
+        for (int i = 0; i < 100000; i++) {
+            Timeout timeout = newTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long expireTick = (timeout.deadline + tickNanos - 1) / tickNanos;
+            timeout.expireTick = expireTick;
+            if (expireTick <= tick) {
+                timeout.expire();
+            } else {
+                place(timeout);
+            }
+        }
+    }
+
+    /**
+     * 将高层槽位中的任务重新放入时间轮
+     *
+     * @param timeout 槽位链表头
+     */
+    private void cascade(Timeout timeout) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            if (!timeout.isCancelled()) {
+                if (timeout.expireTick <= tick) {
+                    timeout.expire();
+                } else {
+                    place(timeout);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * 根据到期刻度与当前刻度的差异选择层级及槽位，到期刻度大于当前刻度
+     *
+     * @param timeout 定时任务
+     */
+    private void place(Timeout timeout) {
+        long expireTick = timeout.expireTick;
+        int levels = wheels.length;
+        int level = 0;
+        while (level < levels - 1 && ((expireTick ^ tick) >>> ((level + 1) * bits)) != 0) {
+            level++;
+        }
+        wheels[level][(int) (expireTick >>> (level * bits)) & mask].add(timeout);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.kaka.util.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程支持
+ * <br>
+ * 本项目以jdk8编译，运行于jdk21及以上版本时，通过方法句柄调用
+ * Executors.newVirtualThreadPerTaskExecutor创建每任务一个虚拟线程的执行器；
+ * 低版本jdk（或jdk19、20未开启预览特性）时不可用。
+ *
+ * @author zkpursuit
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle FACTORY;
+    private static final MethodHandle IS_VIRTUAL;
+
+    static {
+        MethodHandle isVirtual = null;
+        try {
+            isVirtual = MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (Throwable ex) {
+            isVirtual = null;
+        }
+        IS_VIRTUAL = isVirtual;
+    }
+
+    static {
+        MethodHandle factory = null;
+        try {
+            factory = MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            //jdk19、20中未开启预览特性时调用将抛出UnsupportedOperationException
+            ExecutorService probe = (ExecutorService) factory.invoke();
+            probe.shutdown();
+        } catch (Throwable ex) {
+            factory = null;
+        }
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前jvm是否支持虚拟线程
+     *
+     * @return true支持
+     */
+    public static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * 线程是否为虚拟线程
+     *
+     * @param thread 线程
+     * @return true为虚拟线程，当前jvm不支持虚拟线程时返回false
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+
+    /**
+     * 创建每任务一个虚拟线程的执行器
+     *
+     * @return 执行器，当前jvm不支持虚拟线程时返回null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) FACTORY.invoke();
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+}
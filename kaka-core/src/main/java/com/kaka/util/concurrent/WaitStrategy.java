@@ -0,0 +1,64 @@
+package com.kaka.util.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 环形缓冲区中生产者（缓冲区满）或消费者（缓冲区空）的等待策略
+ *
+ * @author zkpursuit
+ */
+public enum WaitStrategy {
+
+    /**
+     * 忙等，延迟最低，但会一直占满CPU核心，适合消费者线程数小于CPU核心数且独占核心的场景
+     */
+    BUSY_SPIN {
+        @Override
+        public int idle(int counter) {
+            return counter + 1;
+        }
+    },
+    /**
+     * 自旋一定次数后让出CPU，延迟较低，空闲时仍有一定的CPU消耗
+     */
+    YIELD {
+        @Override
+        public int idle(int counter) {
+            if (counter < SPIN_TRIES) {
+                return counter + 1;
+            }
+            Thread.yield();
+            return counter;
+        }
+    },
+    /**
+     * 自旋、让出CPU后短暂挂起线程，空闲时CPU消耗最低，延迟受操作系统线程调度精度影响
+     */
+    PARK {
+        @Override
+        public int idle(int counter) {
+            if (counter < SPIN_TRIES) {
+                return counter + 1;
+            }
+            if (counter < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+                return counter + 1;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+            return counter;
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 1000L;
+
+    /**
+     * 等待一次
+     *
+     * @param counter 本轮连续等待的计数，首次等待时为0
+     * @return 下次等待时传入的计数
+     */
+    public abstract int idle(int counter);
+
+}
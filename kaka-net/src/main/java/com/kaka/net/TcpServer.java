@@ -29,7 +29,7 @@ abstract public class TcpServer {
     private final Logger logger = (Logger) LoggerFactory.getLogger(TcpServer.class);
 
     /**
-     * 启动服务
+     * 启动服务，阻塞至服务关闭
      *
      * @param address                绑定的地址
      * @param ioThreadPoolSize       IO线程池大小，处理read/write
@@ -40,38 +40,55 @@ abstract public class TcpServer {
      */
     public void start(InetSocketAddress address, int ioThreadPoolSize, int businessThreadPoolSize, int readerIdleTimeSeconds, int writerIdleTimeSeconds, int allIdleTimeSeconds) {
         try {
-            //用于接收所有连接到服务器端的客户端连接
-            //要在EventLoopGroup创建多少个线程，映射多少个Channel可以在EventLoopGroup的构造方法中进行配置
-            //处理socket握手连接
-            bossGroup = new NioEventLoopGroup(2);
-            //当有新的连接进来时将会被注册到worker中，理想线程数为CPU核数的2倍,此线程组为处理IO操作
-            workerGroup = new NioEventLoopGroup(ioThreadPoolSize);
-            //IO处理结束后的业务处理线程组
-            //如果业务不复杂可以不需要下面的业务处理线程组
-            if (businessThreadPoolSize > 0) {
-                businessThreadGroup = new NioEventLoopGroup(businessThreadPoolSize);
-            }
-            //用于设置服务器的辅助类
-            ServerBootstrap bootstrap = new ServerBootstrap();
-            //bootstrap.option(ChannelOption.SO_TIMEOUT, this);
-            //bootstrap.option(ChannelOption.s, this);
-            logger.info("启动Socket服务，监听端口" + address.getPort());
-            bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childOption(ChannelOption.RCVBUF_ALLOCATOR, new AdaptiveRecvByteBufAllocator(64, 1024, 65536))
-                    .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
-                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
-                    .childHandler(buildChannelInitializer(readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds));
-            ChannelFuture f = bootstrap.bind(address).sync();
-            f.channel().closeFuture().sync();
+            Channel channel = bind(address, ioThreadPoolSize, businessThreadPoolSize, readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds);
+            channel.closeFuture().sync();
         } catch (InterruptedException ex) {
             logger.error(ex.getLocalizedMessage(), ex);
         } finally {
-            bossGroup.shutdownGracefully();
-            workerGroup.shutdownGracefully();
-            if (businessThreadGroup != null) {
-                businessThreadGroup.shutdownGracefully();
-            }
+            stop();
+        }
+    }
+
+    /**
+     * 绑定端口启动服务，不阻塞，由{@link #stop()}关闭服务
+     *
+     * @param address                绑定的地址
+     * @param ioThreadPoolSize       IO线程池大小，处理read/write
+     * @param businessThreadPoolSize 业务处理线程池中默认初始化线程
+     * @param readerIdleTimeSeconds  读超时时间，0表示不可用
+     * @param writerIdleTimeSeconds  写超时时间，0表示不可用
+     * @param allIdleTimeSeconds     读写超时时间，0表示不可用
+     * @return 监听的服务端信道
+     * @throws InterruptedException 等待绑定完成时被中断
+     */
+    public Channel bind(InetSocketAddress address, int ioThreadPoolSize, int businessThreadPoolSize, int readerIdleTimeSeconds, int writerIdleTimeSeconds, int allIdleTimeSeconds) throws InterruptedException {
+        //用于接收所有连接到服务器端的客户端连接
+        //要在EventLoopGroup创建多少个线程，映射多少个Channel可以在EventLoopGroup的构造方法中进行配置
+        //处理socket握手连接
+        bossGroup = new NioEventLoopGroup(2);
+        //当有新的连接进来时将会被注册到worker中，理想线程数为CPU核数的2倍,此线程组为处理IO操作
+        workerGroup = new NioEventLoopGroup(ioThreadPoolSize);
+        //IO处理结束后的业务处理线程组
+        //如果业务不复杂可以不需要下面的业务处理线程组
+        if (businessThreadPoolSize > 0) {
+            businessThreadGroup = new NioEventLoopGroup(businessThreadPoolSize);
+        }
+        //用于设置服务器的辅助类
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        //bootstrap.option(ChannelOption.SO_TIMEOUT, this);
+        //bootstrap.option(ChannelOption.s, this);
+        logger.info("启动Socket服务，监听端口" + address.getPort());
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.RCVBUF_ALLOCATOR, new AdaptiveRecvByteBufAllocator(64, 1024, 65536))
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childHandler(buildChannelInitializer(readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds));
+        try {
+            return bootstrap.bind(address).sync().channel();
+        } catch (Throwable ex) {
+            stop();
+            throw ex;
         }
     }
 
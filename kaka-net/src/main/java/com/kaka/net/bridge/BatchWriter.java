@@ -0,0 +1,132 @@
+package com.kaka.net.bridge;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量写出记录
+ * <br>
+ * 任意线程写入的记录先进入无锁队列，仅在队列由空变为非空后的第一次写入时向信道的事件循环提交一次写出任务；
+ * 写出任务将队列中的记录合并为若干不超过批量大小的数据包后只调用一次flush，
+ * 高并发时大量记录共享一次系统调用。信道不可写时暂停写出，待可写后继续。
+ * <br>
+ * 数据包格式：[int 包体长度][int 记录长度][记录]...，数据包（含包头）不超过批量大小，
+ * 对端据此限制可接收的帧长度，超出批量大小的记录在写入时即被拒绝。
+ *
+ * @author zkpursuit
+ */
+final class BatchWriter {
+
+    private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final int maxBatchBytes;
+    private final int maxPending;
+    private final Runnable flushTask = this::flush;
+    private volatile Channel channel;
+
+    /**
+     * 构造方法
+     *
+     * @param maxBatchBytes 单个数据包（含包头）的最大字节数
+     * @param maxPending    队列中等待写出的最大记录数
+     */
+    BatchWriter(int maxBatchBytes, int maxPending) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * 记录能否放入一个数据包
+     *
+     * @param record 记录数据
+     * @return true 可写入
+     */
+    boolean fits(byte[] record) {
+        return record.length <= maxBatchBytes - 8;
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param record 记录数据，须能放入一个数据包
+     * @return false 等待写出的记录已达上限，记录被丢弃
+     */
+    boolean write(byte[] record) {
+        if (!fits(record)) {
+            throw new IllegalArgumentException("record length must be <= " + (maxBatchBytes - 8) + ": " + record.length);
+        }
+        if (size.incrementAndGet() > maxPending) {
+            size.decrementAndGet();
+            return false;
+        }
+        queue.offer(record);
+        schedule();
+        return true;
+    }
+
+    /**
+     * 设置写出的信道，信道断开期间写入的记录在设置新信道后写出
+     *
+     * @param channel 信道，为null表示信道已断开
+     */
+    void attach(Channel channel) {
+        this.channel = channel;
+        schedule();
+    }
+
+    /**
+     * 提交写出任务，信道可写性变化时也应调用
+     */
+    void schedule() {
+        Channel ch = this.channel;
+        if (ch != null && ch.isActive() && !queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            ch.eventLoop().execute(flushTask);
+        }
+    }
+
+    private void flush() {
+        //先清除标记，写出期间新写入的记录将提交新的写出任务
+        scheduled.set(false);
+        Channel ch = this.channel;
+        if (ch == null || !ch.isActive()) {
+            return;
+        }
+        boolean written = false;
+        while (!queue.isEmpty() && ch.isWritable()) {
+            ByteBuf buf = ch.alloc().ioBuffer(Math.min(maxBatchBytes, 4096));
+            buf.writeInt(0);
+            byte[] record;
+            while ((record = queue.peek()) != null) {
+                int length = buf.readableBytes();
+                if (length > 4 && length + 4 + record.length > maxBatchBytes) {
+                    break;
+                }
+                queue.poll();
+                size.decrementAndGet();
+                buf.writeInt(record.length).writeBytes(record);
+            }
+            buf.setInt(0, buf.readableBytes() - 4);
+            ch.write(buf, ch.voidPromise());
+            written = true;
+        }
+        if (written) {
+            ch.flush();
+        }
+    }
+
+    /**
+     * 等待写出的记录数
+     *
+     * @return 记录数
+     */
+    int size() {
+        return size.get();
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.kaka.net.bridge;
+
+import com.kaka.notice.Message;
+import com.kaka.notice.MessageCodec;
+import io.netty.buffer.ByteBuf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * 跨进程消息桥的记录编解码
+ * <br>
+ * 消息记录：[byte 类型][byte 标记][事件号][long 请求号, short 结果数, 结果名...][int 长度, 分区键][消息体]<br>
+ * 响应记录：[byte 类型][long 请求号][结果名][byte 状态][处理结果或异常信息]
+ * <br>
+ * int、short、long、String类型的事件号直接编码，其它事件号、分区键、消息体及处理结果由{@link MessageCodec}序列化。
+ *
+ * @author zkpursuit
+ */
+final class BridgeCodec {
+
+    static final byte MESSAGE = 1;
+    static final byte RESPONSE = 2;
+
+    private static final int CMD_NULL = 0;
+    private static final int CMD_INT = 1;
+    private static final int CMD_SHORT = 2;
+    private static final int CMD_LONG = 3;
+    private static final int CMD_STRING = 4;
+    private static final int CMD_OBJECT = 5;
+    private static final int CMD_MASK = 0x07;
+    private static final int FLAG_PARTITION_KEY = 0x08;
+    private static final int FLAG_BODY = 0x10;
+    private static final int FLAG_REQUEST = 0x20;
+
+    static final byte RESULT_FAIL = 0;
+    static final byte RESULT_VALUE = 1;
+    static final byte RESULT_NULL = 2;
+
+    private final MessageCodec codec;
+
+    BridgeCodec(MessageCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("codec must not be null");
+        }
+        this.codec = codec;
+    }
+
+    /**
+     * 编码消息记录
+     *
+     * @param msg         消息
+     * @param requestId   请求号，resultNames为空时忽略
+     * @param resultNames 消息携带的处理结果名
+     * @return 记录数据
+     * @throws IOException 序列化异常
+     */
+    byte[] encodeMessage(Message msg, long requestId, Collection<Object> resultNames) throws IOException {
+        Object cmd = msg.getWhat();
+        Object partitionKey = msg.getPartitionKey();
+        Object body = msg.getBody();
+        int flags;
+        if (cmd == null) {
+            flags = CMD_NULL;
+        } else if (cmd instanceof Integer) {
+            flags = CMD_INT;
+        } else if (cmd instanceof Short) {
+            flags = CMD_SHORT;
+        } else if (cmd instanceof Long) {
+            flags = CMD_LONG;
+        } else if (cmd instanceof String) {
+            flags = CMD_STRING;
+        } else {
+            flags = CMD_OBJECT;
+        }
+        if (partitionKey != null) {
+            flags |= FLAG_PARTITION_KEY;
+        }
+        if (body != null) {
+            flags |= FLAG_BODY;
+        }
+        boolean request = !resultNames.isEmpty();
+        if (request) {
+            flags |= FLAG_REQUEST;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(MESSAGE);
+        out.writeByte(flags);
+        switch (flags & CMD_MASK) {
+            case CMD_INT:
+                out.writeInt((Integer) cmd);
+                break;
+            case CMD_SHORT:
+                out.writeShort((Short) cmd);
+                break;
+            case CMD_LONG:
+                out.writeLong((Long) cmd);
+                break;
+            case CMD_STRING:
+                writeString(out, (String) cmd);
+                break;
+            case CMD_OBJECT:
+                writeBytes(out, codec.encode(cmd));
+                break;
+            default:
+                break;
+        }
+        if (request) {
+            out.writeLong(requestId);
+            out.writeShort(resultNames.size());
+            for (Object name : resultNames) {
+                writeString(out, String.valueOf(name));
+            }
+        }
+        if (partitionKey != null) {
+            writeBytes(out, codec.encode(partitionKey));
+        }
+        if (body != null) {
+            out.write(codec.encode(body));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 编码响应记录
+     *
+     * @param requestId  请求号
+     * @param resultName 处理结果名
+     * @param value      处理结果
+     * @param error      处理异常，不为null时忽略处理结果
+     * @return 记录数据
+     */
+    byte[] encodeResponse(long requestId, String resultName, Object value, Throwable error) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(RESPONSE);
+            out.writeLong(requestId);
+            writeString(out, resultName);
+            byte[] payload = null;
+            if (error == null && value != null) {
+                try {
+                    payload = codec.encode(value);
+                } catch (IOException | RuntimeException ex) {
+                    error = ex;
+                }
+            }
+            if (error != null) {
+                out.writeByte(RESULT_FAIL);
+                writeString(out, String.valueOf(error));
+            } else if (payload == null) {
+                out.writeByte(RESULT_NULL);
+            } else {
+                out.writeByte(RESULT_VALUE);
+                out.write(payload);
+            }
+            out.flush();
+        } catch (IOException ex) {
+            //写入内存流不会产生IO异常
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 解码消息记录，记录类型字节已读取
+     *
+     * @param buf 记录数据
+     * @return 消息，携带请求号及处理结果名
+     * @throws IOException 反序列化异常
+     */
+    Request decodeMessage(ByteBuf buf) throws IOException {
+        int flags = buf.readByte();
+        Object cmd;
+        switch (flags & CMD_MASK) {
+            case CMD_NULL:
+                cmd = null;
+                break;
+            case CMD_INT:
+                cmd = buf.readInt();
+                break;
+            case CMD_SHORT:
+                cmd = buf.readShort();
+                break;
+            case CMD_LONG:
+                cmd = buf.readLong();
+                break;
+            case CMD_STRING:
+                cmd = readString(buf);
+                break;
+            default:
+                cmd = decode(buf, buf.readInt());
+                break;
+        }
+        Request request = new Request();
+        if ((flags & FLAG_REQUEST) != 0) {
+            request.id = buf.readLong();
+            String[] names = new String[buf.readUnsignedShort()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString(buf);
+            }
+            request.resultNames = names;
+        }
+        Object partitionKey = null;
+        if ((flags & FLAG_PARTITION_KEY) != 0) {
+            partitionKey = decode(buf, buf.readInt());
+        }
+        Object body = null;
+        if ((flags & FLAG_BODY) != 0) {
+            body = decode(buf, buf.readableBytes());
+        }
+        request.msg = new Message(cmd, body);
+        request.msg.setPartitionKey(partitionKey);
+        return request;
+    }
+
+    /**
+     * 反序列化响应记录中的处理结果
+     *
+     * @param buf 处理结果数据
+     * @return 处理结果
+     * @throws IOException 反序列化异常
+     */
+    Object decodeValue(ByteBuf buf) throws IOException {
+        return decode(buf, buf.readableBytes());
+    }
+
+    private Object decode(ByteBuf buf, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        buf.readBytes(bytes);
+        return codec.decode(bytes, 0, length);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        writeBytes(out, str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 遍历数据包中的所有记录
+     *
+     * @param packet   去掉包体长度后的数据包
+     * @param consumer 记录的消费者，传入的缓冲区仅在回调中有效
+     */
+    static void forEachRecord(ByteBuf packet, Consumer<ByteBuf> consumer) {
+        while (packet.readableBytes() >= 4) {
+            int length = packet.readInt();
+            ByteBuf record = packet.readSlice(length);
+            consumer.accept(record);
+        }
+    }
+
+    static String readString(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readInt()];
+        buf.readBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解码后的消息记录
+     */
+    static final class Request {
+        Message msg;
+        long id;
+        String[] resultNames;
+    }
+
+}
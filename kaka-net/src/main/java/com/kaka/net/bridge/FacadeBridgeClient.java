@@ -0,0 +1,384 @@
+package com.kaka.net.bridge;
+
+import ch.qos.logback.classic.Logger;
+import com.kaka.notice.Facade;
+import com.kaka.notice.FutureResult;
+import com.kaka.notice.IResult;
+import com.kaka.notice.Message;
+import com.kaka.notice.MessageCodec;
+import com.kaka.notice.MessageForwarder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 跨进程消息桥的客户端，将本地{@link Facade}中声明为远程的事件转发至{@link FacadeBridgeServer}
+ * <br>
+ * 与服务端保持一条长连接，断开后自动重连；消息在调用线程中序列化后进入批量写出队列，
+ * 连接上无需等待响应即可连续发送（流水线），断开期间的消息在重连后发送。
+ * <br>
+ * 消息携带处理结果容器（比如通过{@link Facade#request(Message)}发送）时，为其分配请求号，
+ * 收到服务端的响应后为对应的结果容器赋值；超时或连接断开时，{@link FutureResult}以异常完成，其它结果容器赋值为null。
+ *
+ * @author zkpursuit
+ */
+public class FacadeBridgeClient implements MessageForwarder, Closeable {
+
+    private static final Logger logger = (Logger) LoggerFactory.getLogger(FacadeBridgeClient.class);
+
+    private final InetSocketAddress address;
+    private final BridgeCodec codec;
+    private final long requestTimeoutMillis;
+    private final long reconnectDelayMillis;
+    private final BatchWriter writer;
+    private final AtomicLong requestIds = new AtomicLong();
+    private final Map<Long, PendingRequest> pendings = new ConcurrentHashMap<>();
+    private final EventLoopGroup group;
+    private final Bootstrap bootstrap;
+    private ScheduledFuture<?> timeoutTask;
+    private volatile Channel channel;
+    private volatile boolean closed;
+
+    /**
+     * 构造方法
+     *
+     * @param address              服务端地址
+     * @param codec                序列化方式，须与服务端一致；使用{@link MessageCodec#jdk(String...)}时仅限可信网络
+     * @param maxBatchBytes        单个数据包（含包头）的最大字节数，须与服务端一致
+     * @param maxPending           等待写出的最大消息数，超出时丢弃消息
+     * @param requestTimeoutMillis 等待处理结果的超时毫秒数
+     * @param reconnectDelayMillis 断线重连的间隔毫秒数
+     */
+    public FacadeBridgeClient(InetSocketAddress address, MessageCodec codec, int maxBatchBytes, int maxPending, long requestTimeoutMillis, long reconnectDelayMillis) {
+        this.address = address;
+        this.codec = new BridgeCodec(codec);
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.writer = new BatchWriter(maxBatchBytes, maxPending);
+        this.group = new NioEventLoopGroup(1, new DefaultThreadFactory("kaka-bridge", true));
+        this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    public void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(maxBatchBytes, 0, 4, 0, 4));
+                        ch.pipeline().addLast(new BridgeClientHandler());
+                    }
+                });
+    }
+
+    /**
+     * 构造方法，数据包最大64KB，最多65536个等待写出的消息，请求超时30秒，断线1秒后重连
+     *
+     * @param address 服务端地址
+     * @param codec   序列化方式，须与服务端一致
+     */
+    public FacadeBridgeClient(InetSocketAddress address, MessageCodec codec) {
+        this(address, codec, 64 * 1024, 65536, 30000, 1000);
+    }
+
+    /**
+     * 连接服务端，不阻塞，连接失败时按间隔重连
+     *
+     * @return this
+     */
+    public FacadeBridgeClient connect() {
+        if (timeoutTask == null) {
+            long period = Math.max(10, Math.min(1000, requestTimeoutMillis / 2));
+            timeoutTask = group.scheduleAtFixedRate(this::expireRequests, period, period, TimeUnit.MILLISECONDS);
+        }
+        doConnect();
+        return this;
+    }
+
+    private void doConnect() {
+        if (closed) {
+            return;
+        }
+        bootstrap.connect(address).addListener((ChannelFuture future) -> {
+            if (!future.isSuccess()) {
+                logger.warn("连接消息桥服务端{}失败：{}", address, future.cause().toString());
+                reconnect();
+            }
+        });
+    }
+
+    private void reconnect() {
+        if (!closed) {
+            group.schedule(this::doConnect, reconnectDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 将事件声明为远程事件，此后这些事件的消息由此客户端转发
+     *
+     * @param facade 本地{@link Facade}
+     * @param cmds   事件号
+     * @return this
+     */
+    public FacadeBridgeClient bind(Facade facade, Object... cmds) {
+        for (Object cmd : cmds) {
+            facade.setRemote(cmd, this);
+        }
+        return this;
+    }
+
+    @Override
+    public void forward(Message msg) {
+        if (closed) {
+            throw new IllegalStateException(String.format("消息桥客户端%s已关闭", address));
+        }
+        Set<Object> names = msg.getResultNames();
+        long id = 0;
+        PendingRequest pending = null;
+        if (!names.isEmpty()) {
+            id = requestIds.incrementAndGet();
+            pending = new PendingRequest(System.currentTimeMillis() + requestTimeoutMillis);
+            for (Object name : names) {
+                pending.results.put(String.valueOf(name), msg.getResult(String.valueOf(name)));
+            }
+            pendings.put(id, pending);
+        }
+        byte[] record;
+        try {
+            record = codec.encodeMessage(msg, id, names);
+        } catch (IOException ex) {
+            if (pending != null) {
+                pendings.remove(id);
+                pending.fail(ex);
+            }
+            throw new IllegalArgumentException(String.format("无法序列化转发的消息%s", msg.getWhat()), ex);
+        }
+        if (!writer.fits(record)) {
+            IllegalArgumentException ex = new IllegalArgumentException(String.format("转发的消息%s共%d字节，超出数据包上限", msg.getWhat(), record.length));
+            if (pending != null) {
+                pendings.remove(id);
+                pending.fail(ex);
+            }
+            throw ex;
+        }
+        if (!writer.write(record)) {
+            IllegalStateException ex = new IllegalStateException(String.format("消息桥%s等待写出的消息超出上限", address));
+            if (pending != null) {
+                pendings.remove(id);
+                pending.fail(ex);
+            }
+            throw ex;
+        }
+    }
+
+    private void doResponse(ByteBuf record) {
+        long id = record.readLong();
+        String name = BridgeCodec.readString(record);
+        byte status = record.readByte();
+        PendingRequest pending = pendings.get(id);
+        if (pending == null) {
+            return;
+        }
+        IResult result = pending.results.remove(name);
+        if (pending.results.isEmpty()) {
+            pendings.remove(id);
+        }
+        if (result == null) {
+            return;
+        }
+        if (status == BridgeCodec.RESULT_FAIL) {
+            fail(result, new RemoteException(BridgeCodec.readString(record)));
+            return;
+        }
+        Object value = null;
+        if (status == BridgeCodec.RESULT_VALUE) {
+            try {
+                value = codec.decodeValue(record);
+            } catch (IOException | RuntimeException ex) {
+                fail(result, ex);
+                return;
+            }
+        }
+        result.set(value);
+    }
+
+    private void expireRequests() {
+        long now = System.currentTimeMillis();
+        Iterator<PendingRequest> it = pendings.values().iterator();
+        while (it.hasNext()) {
+            PendingRequest pending = it.next();
+            if (pending.deadline <= now) {
+                it.remove();
+                pending.fail(new TimeoutException(String.format("等待消息桥%s的处理结果超时", address)));
+            }
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        Iterator<PendingRequest> it = pendings.values().iterator();
+        while (it.hasNext()) {
+            PendingRequest pending = it.next();
+            it.remove();
+            pending.fail(cause);
+        }
+    }
+
+    private static void fail(IResult result, Throwable cause) {
+        if (result instanceof FutureResult) {
+            ((FutureResult) result).fail(cause);
+        } else {
+            result.set(null);
+        }
+    }
+
+    /**
+     * 是否已连接服务端
+     *
+     * @return true已连接
+     */
+    public boolean isConnected() {
+        Channel ch = this.channel;
+        return ch != null && ch.isActive();
+    }
+
+    /**
+     * 等待写出的消息数
+     *
+     * @return 消息数
+     */
+    public int getPendingCount() {
+        return writer.size();
+    }
+
+    /**
+     * 等待处理结果的请求数
+     *
+     * @return 请求数
+     */
+    public int getRequestCount() {
+        return pendings.size();
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * 关闭连接，未完成的请求以异常完成
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+        }
+        Channel ch = this.channel;
+        if (ch != null) {
+            ch.close().awaitUninterruptibly();
+        }
+        failAll(new IOException(String.format("消息桥客户端%s已关闭", address)));
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 等待处理结果的请求
+     */
+    private static final class PendingRequest {
+        final long deadline;
+        final Map<String, IResult> results = new ConcurrentHashMap<>();
+
+        PendingRequest(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void fail(Throwable cause) {
+            for (IResult result : results.values()) {
+                FacadeBridgeClient.fail(result, cause);
+            }
+            results.clear();
+        }
+    }
+
+    /**
+     * 服务端处理消息时产生的异常
+     */
+    public static final class RemoteException extends RuntimeException {
+        public RemoteException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 连接处理器
+     */
+    private class BridgeClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            channel = ctx.channel();
+            writer.attach(ctx.channel());
+            logger.info("已连接消息桥服务端{}", address);
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            channel = null;
+            writer.attach(null);
+            //已发出请求的响应无法再送达
+            failAll(new IOException(String.format("与消息桥服务端%s的连接已断开", address)));
+            reconnect();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            writer.schedule();
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf packet) throws Exception {
+            BridgeCodec.forEachRecord(packet, record -> {
+                if (record.readByte() == BridgeCodec.RESPONSE) {
+                    doResponse(record);
+                }
+            });
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            logger.error(String.format("消息桥服务端%s连接异常", address), cause);
+            ctx.close();
+        }
+    }
+
+}
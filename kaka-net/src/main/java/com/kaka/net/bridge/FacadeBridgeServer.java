@@ -0,0 +1,153 @@
+package com.kaka.net.bridge;
+
+import ch.qos.logback.classic.Logger;
+import com.kaka.net.TcpServer;
+import com.kaka.net.tcp.TcpServerHandler;
+import com.kaka.notice.Facade;
+import com.kaka.notice.FutureResult;
+import com.kaka.notice.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * 跨进程消息桥的服务端，接收{@link FacadeBridgeClient}转发的消息并派发到本地{@link Facade}
+ * <br>
+ * 消息携带处理结果时，服务端为每个处理结果名设置{@link FutureResult}，本地事件处理器赋值后将结果回传给客户端；
+ * 回传的响应与转发的消息一样批量写出。
+ *
+ * @author zkpursuit
+ */
+public class FacadeBridgeServer extends TcpServer {
+
+    private static final Logger logger = (Logger) LoggerFactory.getLogger(FacadeBridgeServer.class);
+
+    private final Facade facade;
+    private final BridgeCodec codec;
+    private final boolean asyn;
+    private final int maxBatchBytes;
+    private final int maxPending;
+
+    /**
+     * 构造方法
+     *
+     * @param facade        派发消息的本地{@link Facade}
+     * @param codec         序列化方式，须与客户端一致；使用{@link MessageCodec#jdk(String...)}时仅限可信网络
+     * @param asyn          true为异步派发，此时facade须已初始化线程池；false时在IO线程中同步处理
+     * @param maxBatchBytes 数据包（含包头）的最大字节数，须与客户端一致，超出的请求数据包将被丢弃
+     * @param maxPending    每个连接等待写出的最大响应数
+     */
+    public FacadeBridgeServer(Facade facade, MessageCodec codec, boolean asyn, int maxBatchBytes, int maxPending) {
+        this.facade = facade;
+        this.codec = new BridgeCodec(codec);
+        this.asyn = asyn;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * 构造方法，数据包最大64KB，每个连接最多65536个等待写出的响应
+     *
+     * @param facade 派发消息的本地{@link Facade}
+     * @param codec  序列化方式，须与客户端一致
+     * @param asyn   true为异步派发，此时facade须已初始化线程池
+     */
+    public FacadeBridgeServer(Facade facade, MessageCodec codec, boolean asyn) {
+        this(facade, codec, asyn, 64 * 1024, 65536);
+    }
+
+    @Override
+    protected void initCodec(ChannelPipeline pipeline) {
+        pipeline.addLast(new LengthFieldBasedFrameDecoder(maxBatchBytes, 0, 4, 0, 4));
+    }
+
+    @Override
+    protected TcpServerHandler buildServerHandler() {
+        return new BridgeServerHandler();
+    }
+
+    /**
+     * 单个连接的处理器，连接状态消息发送至派发消息的本地{@link Facade}
+     */
+    private class BridgeServerHandler extends TcpServerHandler {
+
+        private final BatchWriter writer = new BatchWriter(maxBatchBytes, maxPending);
+
+        BridgeServerHandler() {
+            super(facade);
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            writer.attach(ctx.channel());
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            writer.attach(null);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            writer.schedule();
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        protected void doDataPacket(ChannelHandlerContext ctx, ByteBuf packet) {
+            BridgeCodec.forEachRecord(packet, this::doRecord);
+        }
+
+        private void doRecord(ByteBuf record) {
+            if (record.readByte() != BridgeCodec.MESSAGE) {
+                return;
+            }
+            BridgeCodec.Request request;
+            try {
+                request = codec.decodeMessage(record);
+            } catch (IOException | RuntimeException ex) {
+                logger.error("无法解析转发的消息", ex);
+                return;
+            }
+            FutureResult<?>[] results = null;
+            if (request.resultNames != null) {
+                final long id = request.id;
+                results = new FutureResult<?>[request.resultNames.length];
+                for (int i = 0; i < results.length; i++) {
+                    final String name = request.resultNames[i];
+                    FutureResult<Object> result = new FutureResult<>();
+                    results[i] = result;
+                    request.msg.setResult(name, result);
+                    result.future().whenComplete((value, error) -> {
+                        byte[] response = codec.encodeResponse(id, name, value, error);
+                        if (!writer.fits(response)) {
+                            response = codec.encodeResponse(id, name, null, new IllegalStateException(
+                                    String.format("处理结果%d字节，超出数据包上限", response.length)));
+                        }
+                        if (!writer.write(response)) {
+                            logger.warn("等待写出的响应超出上限，丢弃请求{}的处理结果{}", id, name);
+                        }
+                    });
+                }
+            }
+            try {
+                facade.sendMessage(request.msg, asyn);
+            } catch (RuntimeException ex) {
+                logger.error(String.format("派发转发的消息%s失败", request.msg.getWhat()), ex);
+                if (results != null) {
+                    for (FutureResult<?> result : results) {
+                        result.fail(ex);
+                    }
+                }
+            }
+        }
+
+    }
+
+}
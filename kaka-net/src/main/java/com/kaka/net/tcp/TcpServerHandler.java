@@ -13,7 +13,23 @@ import io.netty.channel.SimpleChannelInboundHandler;
  */
 abstract public class TcpServerHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
-    private final Facade facade = FacadeFactory.getFacade();
+    private final Facade facade;
+
+    /**
+     * 连接状态消息发送至默认的{@link Facade}
+     */
+    public TcpServerHandler() {
+        this(FacadeFactory.getFacade());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param facade 接收连接状态消息（{@link TcpStateCode}）的{@link Facade}
+     */
+    protected TcpServerHandler(Facade facade) {
+        this.facade = facade;
+    }
 
     /**
      * 处理数据包
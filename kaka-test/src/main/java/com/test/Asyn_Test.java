@@ -59,6 +59,10 @@ public class Asyn_Test extends Startup {
         facade.sendMessage(syncMsg2, true); //异步发送事件通知
         System.out.println(result3.get());
         
+        //以CompletableFuture获取处理结果，无需阻塞等待
+        facade.<String>request(new Message("10000", "让ResultCommand接收执行"), "ResultMsg", true)
+                .thenAccept(System.out::println);
+
         facade.initScheduleThreadPool(Executors.newScheduledThreadPool(2));
         long c = System.currentTimeMillis();
         Scheduler scheduler = Scheduler.create("com/test/units")
@@ -68,5 +72,8 @@ public class Asyn_Test extends Startup {
                 .repeat(5); //执行次数
         //此处的执行次数为5次，但因执行到某次时超出设置的结束时间，故而实际次数将少于5次
         facade.sendMessage(new Message("1000", "让MyCommand接收执行"), scheduler);
+
+        //按cron表达式调度，每10秒执行一次，无需引入Quartz
+        facade.sendMessage(new Message("1000", "让MyCommand定时接收执行"), Scheduler.create("cron").cron("0/10 * * * * ?"));
     }
 }
@@ -0,0 +1,47 @@
+package com.test;
+
+import com.kaka.Startup;
+import com.kaka.net.bridge.FacadeBridgeClient;
+import com.kaka.net.bridge.FacadeBridgeServer;
+import com.kaka.notice.Facade;
+import com.kaka.notice.FacadeFactory;
+import com.kaka.notice.Message;
+import com.kaka.notice.MessageCodec;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨进程消息桥范例，为便于演示，服务端与客户端运行于同一进程的不同Facade中
+ *
+ * @author zkpursuit
+ */
+public class Bridge_Test extends Startup {
+
+    public static void main(String[] args) throws Exception {
+        //服务端：默认Facade注册事件处理器，接收转发的消息
+        Facade facade = FacadeFactory.getFacade();
+        Bridge_Test test = new Bridge_Test();
+        test.scan("com.test.units");
+        facade.initThreadPool(Executors.newFixedThreadPool(2));
+        FacadeBridgeServer server = new FacadeBridgeServer(facade, MessageCodec.jdk(), true);
+        server.bind(new InetSocketAddress("127.0.0.1", 9090), 1, 0, 0, 0, 0);
+
+        //客户端：将事件声明为远程事件，无需注册事件处理器
+        Facade client = FacadeFactory.getFacade("client");
+        FacadeBridgeClient bridge = new FacadeBridgeClient(new InetSocketAddress("127.0.0.1", 9090), MessageCodec.jdk())
+                .bind(client, "1000", "10000")
+                .connect();
+        client.sendMessage(new Message("1000", "经消息桥让MyCommand接收执行"));
+        //远程处理结果经响应回传
+        String result = client.<String>request(new Message("10000", "经消息桥让ResultCommand接收执行"), "ResultMsg", false)
+                .get(5, TimeUnit.SECONDS);
+        System.out.println(result);
+
+        bridge.close();
+        server.stop();
+        System.exit(0);
+    }
+
+}
@@ -2,6 +2,7 @@ package com.test.units;
 
 import com.kaka.notice.AsynResult;
 import com.kaka.notice.Command;
+import com.kaka.notice.FutureResult;
 import com.kaka.notice.IResult;
 import com.kaka.notice.Message;
 import com.kaka.notice.SyncResult;
@@ -32,6 +33,8 @@ public class ResultCommand extends Command {
                 result.set(">>>>>>>>异步执行结果");
             } else if (result instanceof SyncResult) {
                 result.set(">>>>>>>>同步执行结果");
+            } else if (result instanceof FutureResult) {
+                result.set(">>>>>>>>CompletableFuture执行结果");
             }
         }
     }